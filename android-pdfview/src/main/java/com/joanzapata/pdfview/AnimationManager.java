@@ -26,6 +26,7 @@ import android.graphics.PointF;
 import android.view.animation.DecelerateInterpolator;
 
 import com.joanzapata.pdfview.PDFView;
+import com.joanzapata.pdfview.util.Constants;
 
 /**
  * @author Joan Zapata
@@ -81,6 +82,23 @@ class AnimationManager {
         animation.start();
     }
 
+    /**
+     * Keep moving after a fling, slowing down until the given offsets.
+     * The PDFView takes care of stopping at the borders of the document.
+     */
+    public void startFlingAnimation(float xFrom, float yFrom, float xTo, float yTo) {
+        if (animation != null) {
+            animation.cancel();
+        }
+        animation = ValueAnimator.ofFloat(0f, 1f);
+        animation.setInterpolator(new DecelerateInterpolator());
+        FlingAnimation flingAnim = new FlingAnimation(xFrom, yFrom, xTo, yTo);
+        animation.addUpdateListener(flingAnim);
+        animation.addListener(flingAnim);
+        animation.setDuration(Constants.FLING_DURATION);
+        animation.start();
+    }
+
     public void stopAll() {
         if (animation != null) {
             animation.cancel();
@@ -108,6 +126,42 @@ class AnimationManager {
 
     }
 
+    class FlingAnimation implements AnimatorUpdateListener, AnimatorListener {
+
+        private final float xFrom, yFrom, xTo, yTo;
+
+        public FlingAnimation(float xFrom, float yFrom, float xTo, float yTo) {
+            this.xFrom = xFrom;
+            this.yFrom = yFrom;
+            this.xTo = xTo;
+            this.yTo = yTo;
+        }
+
+        @Override
+        public void onAnimationUpdate(ValueAnimator animation) {
+            float progress = (Float) animation.getAnimatedValue();
+            pdfView.moveTo(xFrom + (xTo - xFrom) * progress, yFrom + (yTo - yFrom) * progress);
+        }
+
+        @Override
+        public void onAnimationCancel(Animator animation) {
+        }
+
+        @Override
+        public void onAnimationEnd(Animator animation) {
+            pdfView.loadPages();
+        }
+
+        @Override
+        public void onAnimationRepeat(Animator animation) {
+        }
+
+        @Override
+        public void onAnimationStart(Animator animation) {
+        }
+
+    }
+
     class ZoomAnimation implements AnimatorUpdateListener, AnimatorListener {
 
         @Override
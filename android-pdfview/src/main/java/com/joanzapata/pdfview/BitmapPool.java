@@ -0,0 +1,109 @@
+/**
+ * Copyright 2014 Joan Zapata
+ *
+ * This file is part of Android-pdfview.
+ *
+ * Android-pdfview is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Android-pdfview is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Android-pdfview.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.joanzapata.pdfview;
+
+import android.graphics.Bitmap;
+
+import com.joanzapata.pdfview.util.MemoryUtils;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+
+import static com.joanzapata.pdfview.util.Constants.Cache.PART_BYTES;
+import static com.joanzapata.pdfview.util.Constants.Cache.POOL_SIZE;
+
+/**
+ * Keeps the bitmaps which are not used anymore, grouped by size, so they can
+ * be drawn into again instead of allocating new ones. Since almost all the
+ * parts have the same size, most of the renderings reuse a bitmap.
+ * <p/>
+ * This class is thread safe, bitmaps are released on the UI thread and
+ * acquired by the rendering workers.
+ */
+class BitmapPool {
+
+    private static final Bitmap.Config CONFIG = Bitmap.Config.RGB_565;
+
+    /** The available bitmaps, by size */
+    private final HashMap<Integer, ArrayDeque<Bitmap>> bitmaps;
+
+    /** Maximum number of bytes kept by the pool */
+    private final int maxSize;
+
+    /** Number of bytes currently kept by the pool */
+    private int size;
+
+    public BitmapPool() {
+        this.bitmaps = new HashMap<Integer, ArrayDeque<Bitmap>>();
+        this.maxSize = POOL_SIZE * PART_BYTES;
+    }
+
+    /**
+     * @return A mutable bitmap of the given size, with unspecified content.
+     */
+    public synchronized Bitmap acquire(int width, int height) {
+        ArrayDeque<Bitmap> bucket = bitmaps.get(bucketKey(width, height));
+        if (bucket != null && !bucket.isEmpty()) {
+            Bitmap bitmap = bucket.poll();
+            size -= MemoryUtils.getBitmapSize(bitmap);
+            return bitmap;
+        }
+        return Bitmap.createBitmap(width, height, CONFIG);
+    }
+
+    /**
+     * Give a bitmap back to the pool. It must not be used by the
+     * caller anymore. If the pool is full, the bitmap is recycled.
+     */
+    public synchronized void release(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled()) {
+            return;
+        }
+
+        int bitmapSize = MemoryUtils.getBitmapSize(bitmap);
+        if (!bitmap.isMutable() || bitmap.getConfig() != CONFIG || size + bitmapSize > maxSize) {
+            bitmap.recycle();
+            return;
+        }
+
+        Integer key = bucketKey(bitmap.getWidth(), bitmap.getHeight());
+        ArrayDeque<Bitmap> bucket = bitmaps.get(key);
+        if (bucket == null) {
+            bucket = new ArrayDeque<Bitmap>();
+            bitmaps.put(key, bucket);
+        }
+        bucket.offer(bitmap);
+        size += bitmapSize;
+    }
+
+    /** Recycle all the bitmaps kept by the pool */
+    public synchronized void clear() {
+        for (ArrayDeque<Bitmap> bucket : bitmaps.values()) {
+            for (Bitmap bitmap : bucket) {
+                bitmap.recycle();
+            }
+        }
+        bitmaps.clear();
+        size = 0;
+    }
+
+    private static Integer bucketKey(int width, int height) {
+        return (width << 16) | (height & 0xFFFF);
+    }
+}
@@ -18,136 +18,350 @@
  */
 package com.joanzapata.pdfview;
 
-import android.graphics.RectF;
+import android.util.SparseArray;
+
 import com.joanzapata.pdfview.model.PagePart;
+import com.joanzapata.pdfview.util.MemoryUtils;
+
+import android.graphics.RectF;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
-import java.util.PriorityQueue;
-import java.util.Vector;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 
 import static com.joanzapata.pdfview.util.Constants.Cache.*;
 
+/**
+ * Keeps the rendered parts, indexed by their {@link PagePart#getKey() key}.
+ * <p/>
+ * The parts of the current set (the ones requested by the last call to
+ * {@link PDFView#loadPages()}) are in the active cache, the older ones in
+ * the passive cache. Both maps are kept in insertion order, so lookup,
+ * promotion and eviction of the oldest part are all done in constant time.
+ * <p/>
+ * The size of the cache is a number of bytes, the parts are evicted
+ * considering the actual size of their bitmap.
+ * <p/>
+ * The parts to draw are indexed by user page, so the view only looks at the
+ * pages on the screen. This index is rebuilt only when the cache changes,
+ * so drawing a frame doesn't allocate anything. The parts of a page are
+ * sorted from the lowest resolution to the highest, so the sharper parts
+ * are always drawn over the others, whatever the order they came in.
+ */
 class CacheManager {
 
-    private PriorityQueue<PagePart> passiveCache;
+    /** Part of the bounds the parts may leave uncovered, to absorb the rounding errors */
+    private static final float COVERAGE_TOLERANCE = 1e-5f;
+
+    /** Sorts the parts by grid, from the lowest resolution to the highest */
+    private static final Comparator<PagePart> RESOLUTION_ORDER = new Comparator<PagePart>() {
+        @Override
+        public int compare(PagePart lhs, PagePart rhs) {
+            int lhsResolution = lhs.getGridResolution();
+            int rhsResolution = rhs.getGridResolution();
+            if (lhsResolution != rhsResolution) {
+                return lhsResolution < rhsResolution ? -1 : 1;
+            }
+            long lhsGrid = lhs.getGridKey();
+            long rhsGrid = rhs.getGridKey();
+            return lhsGrid < rhsGrid ? -1 : lhsGrid == rhsGrid ? 0 : 1;
+        }
+    };
+
+    private LinkedHashMap<Long, PagePart> passiveCache;
+
+    private LinkedHashMap<Long, PagePart> activeCache;
+
+    private LinkedHashMap<Long, PagePart> thumbnails;
+
+    /** Snapshot of the cached parts of each user page, in drawing order */
+    private final SparseArray<ArrayList<PagePart>> drawnParts;
+
+    /** Snapshot of the cached thumbnail of each user page */
+    private final SparseArray<PagePart> drawnThumbnails;
+
+    /** True if the snapshots must be rebuilt before being drawn */
+    private boolean partsChanged, thumbnailsChanged;
 
-    private PriorityQueue<PagePart> activeCache;
+    /** Reused by isCovered() to avoid allocations while drawing */
+    private final RectF coveredBounds = new RectF();
 
-    private Vector<PagePart> thumbnails;
+    /** Maximum number of bytes used by the parts and by the thumbnails */
+    private int maxPartsSize, maxThumbnailsSize;
 
-    public CacheManager() {
-        activeCache = new PriorityQueue<PagePart>(CACHE_SIZE, new PagePartComparator());
-        passiveCache = new PriorityQueue<PagePart>(CACHE_SIZE, new PagePartComparator());
-        thumbnails = new Vector<PagePart>();
+    /** Number of bytes currently used by the parts and by the thumbnails */
+    private int partsSize, thumbnailsSize;
+
+    /** Maximum number of bytes used at the same time since the creation */
+    private int peakSize;
+
+    /** Where the evicted bitmaps go */
+    private final BitmapPool bitmapPool;
+
+    public CacheManager(BitmapPool bitmapPool, int maxSize) {
+        this.bitmapPool = bitmapPool;
+        activeCache = new LinkedHashMap<Long, PagePart>();
+        passiveCache = new LinkedHashMap<Long, PagePart>();
+        thumbnails = new LinkedHashMap<Long, PagePart>();
+        drawnParts = new SparseArray<ArrayList<PagePart>>();
+        drawnThumbnails = new SparseArray<PagePart>();
+        setMaxSize(maxSize);
+    }
+
+    /**
+     * Change the number of bytes the cache can use. It will be
+     * shared between the parts and the thumbnails, and applied
+     * the next time a bitmap is added.
+     */
+    public void setMaxSize(int maxSize) {
+        maxThumbnailsSize = (int) (maxSize * THUMBNAILS_CACHE_RATIO);
+        maxPartsSize = maxSize - maxThumbnailsSize;
+    }
+
+    /** @return The number of parts that can be kept in the cache */
+    public int getPartsCapacity() {
+        return Math.max(1, maxPartsSize / PART_BYTES);
+    }
+
+    /** @return The number of bytes currently used by the cache */
+    public int getSize() {
+        return partsSize + thumbnailsSize;
+    }
+
+    /** @return The maximum number of bytes used at the same time by the cache */
+    public int getPeakSize() {
+        return peakSize;
     }
 
     public void cachePart(PagePart part) {
 
+        // Replace the part if it was rendered twice
+        Long key = part.getKey();
+        recyclePart(passiveCache.remove(key));
+        recyclePart(activeCache.remove(key));
+
         // If cache too big, remove and recycle
-        makeAFreeSpace();
+        int size = MemoryUtils.getBitmapSize(part.getRenderedBitmap());
+        makeAFreeSpace(size);
 
         // Then add part
-        activeCache.offer(part);
+        activeCache.put(key, part);
+        partsSize += size;
+        partsChanged = true;
+        updatePeakSize();
 
     }
 
     public void makeANewSet() {
-        passiveCache.addAll(activeCache);
+        passiveCache.putAll(activeCache);
         activeCache.clear();
     }
 
-    private void makeAFreeSpace() {
+    private void makeAFreeSpace(int neededSize) {
 
-        while ((activeCache.size() + passiveCache.size()) >= CACHE_SIZE &&
+        while (partsSize + neededSize > maxPartsSize &&
                 !passiveCache.isEmpty()) {
-            passiveCache.poll().getRenderedBitmap().recycle();
+            recyclePart(removeEldest(passiveCache));
         }
 
-        while ((activeCache.size() + passiveCache.size()) >= CACHE_SIZE &&
+        while (partsSize + neededSize > maxPartsSize &&
                 !activeCache.isEmpty()) {
-            activeCache.poll().getRenderedBitmap().recycle();
+            recyclePart(removeEldest(activeCache));
         }
     }
 
     public void cacheThumbnail(PagePart part) {
 
+        // Replace the thumbnail if it was rendered twice
+        Long key = part.getKey();
+        recycleThumbnail(thumbnails.remove(key));
+
         // If cache too big, remove and recycle
-        if (thumbnails.size() >= THUMBNAILS_CACHE_SIZE) {
-            thumbnails.remove(0).getRenderedBitmap().recycle();
+        int size = MemoryUtils.getBitmapSize(part.getRenderedBitmap());
+        while (thumbnailsSize + size > maxThumbnailsSize && !thumbnails.isEmpty()) {
+            recycleThumbnail(removeEldest(thumbnails));
         }
 
         // Then add thumbnail
-        thumbnails.add(part);
+        thumbnails.put(key, part);
+        thumbnailsSize += size;
+        thumbnailsChanged = true;
+        updatePeakSize();
 
     }
 
-    public boolean upPartIfContained(int userPage, int page, float width, float height, RectF pageRelativeBounds, int toOrder) {
-        PagePart fakePart = new PagePart(userPage, page, null, width, height, pageRelativeBounds, false, 0);
-
-        PagePart found;
-        if ((found = find(passiveCache, fakePart)) != null) {
-            passiveCache.remove(found);
+    /**
+     * If the part with the given key is in the cache, moves it to the current
+     * set so it won't be deleted if the cache needs space.
+     * @return true if the part is contained in the cache
+     */
+    public boolean upPartIfContained(long key, int toOrder) {
+        PagePart found = passiveCache.remove(key);
+        if (found != null) {
+            // Still drawn at the same place, the snapshots don't change
             found.setCacheOrder(toOrder);
-            activeCache.offer(found);
+            activeCache.put(key, found);
             return true;
         }
 
-        return find(activeCache, fakePart) != null;
+        return activeCache.containsKey(key);
+    }
+
+    /** Return true if already contains the thumbnail with the given key */
+    public boolean containsThumbnail(long key) {
+        return thumbnails.containsKey(key);
+    }
+
+    private PagePart removeEldest(LinkedHashMap<Long, PagePart> cache) {
+        Iterator<PagePart> iterator = cache.values().iterator();
+        PagePart eldest = iterator.next();
+        iterator.remove();
+        return eldest;
+    }
+
+    private void recyclePart(PagePart part) {
+        if (part != null) {
+            partsSize -= MemoryUtils.getBitmapSize(part.getRenderedBitmap());
+            bitmapPool.release(part.getRenderedBitmap());
+            partsChanged = true;
+        }
+    }
+
+    private void recycleThumbnail(PagePart part) {
+        if (part != null) {
+            thumbnailsSize -= MemoryUtils.getBitmapSize(part.getRenderedBitmap());
+            bitmapPool.release(part.getRenderedBitmap());
+            thumbnailsChanged = true;
+        }
+    }
+
+    private void updatePeakSize() {
+        peakSize = Math.max(peakSize, getSize());
     }
 
-    /** Return true if already contains the described PagePart */
-    public boolean containsThumbnail(int userPage, int page, float width, float height, RectF pageRelativeBounds) {
-        PagePart fakePart = new PagePart(userPage, page, null, width, height, pageRelativeBounds, true, 0);
-        for (PagePart part : thumbnails) {
-            if (part.equals(fakePart)) {
-                return true;
+    /**
+     * @param userPage A user page.
+     * @return The cached parts of the given page, in drawing order : grid by grid, from
+     * the lowest resolution to the highest. The list is owned by the cache and only
+     * valid until the cache changes, don't keep it.
+     */
+    public List<PagePart> getPageParts(int userPage) {
+        if (partsChanged) {
+            // Keep the lists of the pages, they'll be filled again soon
+            for (int i = 0; i < drawnParts.size(); i++) {
+                drawnParts.valueAt(i).clear();
+            }
+            addToDrawnParts(passiveCache);
+            addToDrawnParts(activeCache);
+            for (int i = 0; i < drawnParts.size(); i++) {
+                Collections.sort(drawnParts.valueAt(i), RESOLUTION_ORDER);
+            }
+            partsChanged = false;
+        }
+        List<PagePart> parts = drawnParts.get(userPage);
+        return parts != null ? parts : Collections.<PagePart>emptyList();
+    }
+
+    /**
+     * The parts of a grid don't overlap, so they cover some bounds if the
+     * sum of their areas inside these bounds is the area of the bounds.
+     * @param userPage      A user page.
+     * @param bounds        Page relative bounds.
+     * @param minResolution The minimum {@link PagePart#getGridResolution() resolution}
+     *                      of the grids to consider.
+     * @return True if the cached parts of one grid cover the given bounds.
+     */
+    public boolean isCovered(int userPage, RectF bounds, int minResolution) {
+        List<PagePart> parts = getPageParts(userPage);
+        float area = bounds.width() * bounds.height() * (1 - COVERAGE_TOLERANCE);
+        float coveredArea = 0;
+
+        // Indexed loop to avoid allocating an iterator, the parts are sorted by grid
+        for (int i = 0; i < parts.size(); i++) {
+            PagePart part = parts.get(i);
+            if (i > 0 && part.getGridKey() != parts.get(i - 1).getGridKey()) {
+                coveredArea = 0;
+            }
+            if (part.getGridResolution() >= minResolution && coveredBounds.setIntersect(bounds, part.getPageRelativeBounds())) {
+                coveredArea += coveredBounds.width() * coveredBounds.height();
+                if (coveredArea >= area) {
+                    return true;
+                }
             }
         }
         return false;
     }
 
-    private PagePart find(PriorityQueue<PagePart> vector, PagePart fakePart) {
-        for (PagePart part : vector) {
-            if (part.equals(fakePart)) {
-                return part;
+    private void addToDrawnParts(LinkedHashMap<Long, PagePart> cache) {
+        for (PagePart part : cache.values()) {
+            ArrayList<PagePart> pageParts = drawnParts.get(part.getUserPage());
+            if (pageParts == null) {
+                pageParts = new ArrayList<PagePart>();
+                drawnParts.put(part.getUserPage(), pageParts);
             }
+            pageParts.add(part);
         }
-        return null;
     }
 
-    public Vector<PagePart> getPageParts() {
-        Vector<PagePart> parts = new Vector<PagePart>(passiveCache);
-        parts.addAll(activeCache);
-        return parts;
+    /**
+     * @param userPage A user page.
+     * @return The cached thumbnail of the given page, or null.
+     */
+    public PagePart getThumbnail(int userPage) {
+        if (thumbnailsChanged) {
+            drawnThumbnails.clear();
+            for (PagePart thumbnail : thumbnails.values()) {
+                drawnThumbnails.put(thumbnail.getUserPage(), thumbnail);
+            }
+            thumbnailsChanged = false;
+        }
+        return drawnThumbnails.get(userPage);
     }
 
-    public Vector<PagePart> getThumbnails() {
-        return thumbnails;
+    /** Recycle the parts and the thumbnail of the given user page, once they're not valid anymore */
+    public void recyclePage(int userPage) {
+        for (Iterator<PagePart> iterator = passiveCache.values().iterator(); iterator.hasNext(); ) {
+            PagePart part = iterator.next();
+            if (part.getUserPage() == userPage) {
+                iterator.remove();
+                recyclePart(part);
+            }
+        }
+        for (Iterator<PagePart> iterator = activeCache.values().iterator(); iterator.hasNext(); ) {
+            PagePart part = iterator.next();
+            if (part.getUserPage() == userPage) {
+                iterator.remove();
+                recyclePart(part);
+            }
+        }
+        for (Iterator<PagePart> iterator = thumbnails.values().iterator(); iterator.hasNext(); ) {
+            PagePart thumbnail = iterator.next();
+            if (thumbnail.getUserPage() == userPage) {
+                iterator.remove();
+                recycleThumbnail(thumbnail);
+            }
+        }
     }
 
     public void recycle() {
-        for (PagePart part : activeCache) {
-            part.getRenderedBitmap().recycle();
+        for (PagePart part : passiveCache.values()) {
+            recyclePart(part);
         }
-        for (PagePart part : activeCache) {
-            part.getRenderedBitmap().recycle();
+        for (PagePart part : activeCache.values()) {
+            recyclePart(part);
         }
-        for (PagePart part : thumbnails) {
-            part.getRenderedBitmap().recycle();
+        for (PagePart part : thumbnails.values()) {
+            recycleThumbnail(part);
         }
         passiveCache.clear();
         activeCache.clear();
         thumbnails.clear();
-    }
-
-    class PagePartComparator implements Comparator<PagePart> {
-        @Override
-        public int compare(PagePart part1, PagePart part2) {
-            if (part1.getCacheOrder() == part2.getCacheOrder()) {
-                return 0;
-            }
-            return part1.getCacheOrder() > part2.getCacheOrder() ? 1 : -1;
-        }
+        drawnParts.clear();
+        drawnThumbnails.clear();
+        partsChanged = thumbnailsChanged = false;
     }
 
 }
@@ -23,43 +23,166 @@ import android.os.AsyncTask;
 import android.util.Log;
 
 import com.joanzapata.pdfview.PDFView;
+import com.joanzapata.pdfview.exception.FileNotFoundException;
+import com.joanzapata.pdfview.util.Constants;
 
 import org.vudroid.core.DecodeService;
 import org.vudroid.core.DecodeServiceBase;
 import org.vudroid.pdfdroid.codec.PdfContext;
 
-class DecodingAsyncTask extends AsyncTask<Void, Void, Void> {
+import java.io.IOException;
+
+/**
+ * Opens the document in the background, in steps: the view is shown as soon as
+ * the page count and the size of the first page are known, the sizes of the other
+ * pages being estimated from it. The real sizes follow, and then the loading is
+ * complete. The progress is published each time some more pages are known.
+ * <p/>
+ * Reading the size of a page means opening it natively, which is as long as
+ * interpreting its content. So the sizes are read one page at a time, and only
+ * while the rendering workers have no part on the screen waiting for them.
+ * An error is never thrown from the background thread, it's given back to the view.
+ */
+class DecodingAsyncTask extends AsyncTask<Void, Integer, Throwable> {
 
     /** The decode service used for decoding the PDF */
     private DecodeService decodeService;
 
-    private boolean cancelled;
-
-    private Uri uri;
+    private DocumentSource documentSource;
 
     private PDFView pdfView;
 
-    public DecodingAsyncTask(Uri uri, PDFView pdfView) {
-        this.cancelled = false;
+    /** The document page shown first, whose size is read first */
+    private int firstPage;
+
+    /** Number of bytes of the native store of the document */
+    private int fitzMemory;
+
+    /** The rendering of the parts on the screen goes before the reading of the page sizes */
+    private RenderingManager renderingManager;
+
+    /** The estimated size of each document page, published with the first progress */
+    private int[] estimatedPageWidths, estimatedPageHeights;
+
+    /** The size of each document page, published when the task is done */
+    private int[] pageWidths, pageHeights;
+
+    /** Set to true once the view is shown, on the UI thread */
+    private boolean opened;
+
+    /** Set to true once the view is given the decode service for good, on the UI thread */
+    private boolean loaded;
+
+    public DecodingAsyncTask(DocumentSource documentSource, int firstPage, int fitzMemory, RenderingManager renderingManager, PDFView pdfView) {
         this.pdfView = pdfView;
-        this.uri = uri;
+        this.documentSource = documentSource;
+        this.firstPage = firstPage;
+        this.fitzMemory = fitzMemory;
+        this.renderingManager = renderingManager;
     }
 
     @Override
-    protected Void doInBackground(Void... params) {
-        decodeService = new DecodeServiceBase(new PdfContext());
+    protected Throwable doInBackground(Void... params) {
+        try {
+            decode();
+            return null;
+        } catch (IOException e) {
+            return new FileNotFoundException("Unable to open the document.", e);
+        } catch (RuntimeException e) {
+            return e;
+        }
+    }
+
+    private void decode() throws IOException {
+        Uri uri = documentSource.open();
+        if (isCancelled()) {
+            return;
+        }
+
+        decodeService = new DecodeServiceBase(new PdfContext(fitzMemory));
         decodeService.setContentResolver(pdfView.getContext().getContentResolver());
-        decodeService.open(uri);
-        return null;
+        decodeService.open(uri, documentSource.isPoolable());
+
+        // The other pages most likely have the size of the first one
+        int pageCount = decodeService.getPageCount();
+        firstPage = Math.max(0, Math.min(firstPage, pageCount - 1));
+        estimatedPageWidths = new int[pageCount];
+        estimatedPageHeights = new int[pageCount];
+        int firstPageWidth = pageCount > 0 ? decodeService.getPageWidth(firstPage) : 0;
+        int firstPageHeight = pageCount > 0 ? decodeService.getPageHeight(firstPage) : 0;
+        for (int i = 0; i < pageCount; i++) {
+            estimatedPageWidths[i] = firstPageWidth;
+            estimatedPageHeights[i] = firstPageHeight;
+        }
+        publishProgress(0);
+
+        // Read the page sizes now, so the UI thread doesn't have to
+        pageWidths = new int[pageCount];
+        pageHeights = new int[pageCount];
+        for (int i = 0; i < pageCount && !isCancelled(); i++) {
+            waitForVisibleParts();
+            pageWidths[i] = decodeService.getPageWidth(i);
+            pageHeights[i] = decodeService.getPageHeight(i);
+            if ((i + 1) % Constants.LOAD_PROGRESS_INTERVAL == 0 && i + 1 < pageCount) {
+                publishProgress(i + 1);
+            }
+        }
+    }
+
+    /** Wait until the parts on the screen are all given to the workers, or the task is cancelled */
+    private void waitForVisibleParts() {
+        while (renderingManager.hasPendingTasks() && !isCancelled()) {
+            try {
+                Thread.sleep(Constants.LOAD_PAUSE);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    @Override
+    protected void onProgressUpdate(Integer... values) {
+        if (isCancelled()) {
+            return;
+        }
+        if (!opened) {
+            opened = true;
+            pdfView.documentOpened(decodeService, estimatedPageWidths, estimatedPageHeights);
+        }
+        pdfView.loadProgress(values[0], estimatedPageWidths.length);
     }
 
-    protected void onPostExecute(Void result) {
-        if (!cancelled) {
-            pdfView.loadComplete(decodeService);
+    protected void onPostExecute(Throwable error) {
+        if (isCancelled()) {
+            return;
+        }
+        if (error == null) {
+            loaded = true;
+            pdfView.loadComplete(pageWidths, pageHeights);
+        } else if (opened) {
+            // The view already uses the decode service, it will release it
+            loaded = true;
+            pdfView.loadError(error);
+        } else {
+            if (decodeService != null) {
+                decodeService.recycle();
+            }
+            pdfView.loadError(error);
         }
     }
 
+    /**
+     * Called once the task is done with the decode service, which has
+     * to be released since the view doesn't own it yet.
+     */
     protected void onCancelled() {
-        cancelled = true;
+        if (decodeService != null) {
+            decodeService.recycle();
+        }
+    }
+
+    /** @return True if the view owns the decode service, and must release it */
+    public boolean isLoaded() {
+        return loaded;
     }
 }
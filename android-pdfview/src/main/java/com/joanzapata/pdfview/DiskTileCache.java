@@ -0,0 +1,501 @@
+/**
+ * Copyright 2014 Joan Zapata
+ *
+ * This file is part of Android-pdfview.
+ *
+ * Android-pdfview is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Android-pdfview is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Android-pdfview.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.joanzapata.pdfview;
+
+import android.graphics.Bitmap;
+import android.os.Process;
+import android.util.Log;
+
+import com.joanzapata.pdfview.util.Constants;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps the rendered parts on the disk, so they don't need to be rendered again
+ * the next time the same document is opened.
+ * <p/>
+ * Each document has its own directory, named after a hash of its size, its date
+ * and its first and last bytes. Each part is a file of raw RGB_565 pixels, named
+ * after its document page, its place in the grid of the page and its size in pixels.
+ * <p/>
+ * Parts are read by the rendering workers, and written behind by a single thread,
+ * which also owns the LRU index of all the files and deletes the least recently
+ * used ones when the cache gets bigger than its maximum size. The writer and its
+ * index are shared by all the caches in the same directory, so several views, or
+ * several loads, stay within the same budget.
+ */
+class DiskTileCache {
+
+    private static final String TAG = DiskTileCache.class.getSimpleName();
+
+    /** Number of bytes read at the start and at the end of the document to build its hash */
+    private static final int HASHED_BYTES = 4096;
+
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    /** Time after which an idle writer thread ends (default 30s) */
+    private static final long WRITER_KEEP_ALIVE = 30 * 1000;
+
+    /** Number of files waiting to be marked as recently used, the next ones aren't */
+    private static final int MAX_PENDING_TOUCHES = 64;
+
+    /** Buffer each reading thread reads the pixels into */
+    private static final ThreadLocal<ByteBuffer> readBuffers = new ThreadLocal<ByteBuffer>();
+
+    /** The store of each cache directory */
+    private static final Map<String, Store> stores = new HashMap<String, Store>();
+
+    /** Directory of all the documents */
+    private final File cacheDir;
+
+    private final File documentFile;
+
+    /** The writer and the index of the cache directory */
+    private final Store store;
+
+    /** Directory of the document, null until computed */
+    private volatile File documentDir;
+
+    private volatile boolean closed;
+
+    /**
+     * @param cacheDir     The directory where all the documents are cached.
+     * @param documentFile The PDF file being displayed.
+     * @param maxSize      The number of bytes all the cached files can use,
+     *                     replacing the size given by the previous caches
+     *                     in the same directory.
+     */
+    public DiskTileCache(File cacheDir, File documentFile, long maxSize) {
+        this.cacheDir = cacheDir;
+        this.documentFile = documentFile;
+        synchronized (stores) {
+            Store store = stores.get(cacheDir.getAbsolutePath());
+            if (store == null) {
+                store = new Store(cacheDir);
+                stores.put(cacheDir.getAbsolutePath(), store);
+            }
+            this.store = store;
+        }
+        store.maxSize = maxSize;
+    }
+
+    /**
+     * Read a part from the disk, callable from any thread.
+     * @param page   The document page of the part.
+     * @param key    The key of the part.
+     * @param bitmap A RGB_565 bitmap of the size of the part, to read the pixels into.
+     * @return True if the part was found, false if it has to be rendered.
+     */
+    public boolean get(int page, long key, Bitmap bitmap) {
+        File dir = getDocumentDir();
+        if (dir == null || closed) {
+            return false;
+        }
+
+        final File file = new File(dir, fileName(page, key, bitmap));
+        int length = bitmap.getRowBytes() * bitmap.getHeight();
+        if (file.length() != length) {
+            return false;
+        }
+
+        RandomAccessFile input = null;
+        try {
+            ByteBuffer buffer = readBuffers.get();
+            if (buffer == null || buffer.capacity() < length) {
+                buffer = ByteBuffer.allocate(length);
+                readBuffers.set(buffer);
+            }
+            input = new RandomAccessFile(file, "r");
+            input.readFully(buffer.array(), 0, length);
+            buffer.clear();
+            buffer.limit(length);
+            bitmap.copyPixelsFromBuffer(buffer);
+        } catch (IOException e) {
+            return false;
+        } finally {
+            closeQuietly(input);
+        }
+
+        // Mark it as recently used
+        store.requestTouch(file);
+        return true;
+    }
+
+    /**
+     * Write a part on the disk in the background, callable from any thread. The
+     * pixels are copied right away, the bitmap can be reused as soon as it returns.
+     * Parts are dropped if too many of them are already waiting to be written.
+     */
+    public void put(int page, long key, Bitmap bitmap) {
+        File dir = getDocumentDir();
+        if (dir == null || closed) {
+            return;
+        }
+
+        // Counted first, so the workers can't go over the bound together
+        if (store.pendingWrites.incrementAndGet() > Constants.Cache.DISK_PENDING_WRITES) {
+            store.pendingWrites.decrementAndGet();
+            return;
+        }
+
+        final File file = new File(dir, fileName(page, key, bitmap));
+        final int length = bitmap.getRowBytes() * bitmap.getHeight();
+        final ByteBuffer buffer = store.acquireBuffer(length);
+        bitmap.copyPixelsToBuffer(buffer);
+
+        store.writer.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    store.write(file, buffer.array(), length);
+                } finally {
+                    store.releaseBuffer(buffer);
+                    store.pendingWrites.decrementAndGet();
+                }
+            }
+        });
+    }
+
+    /** Stop using the cache, the pending parts are still written */
+    public void close() {
+        closed = true;
+    }
+
+    private String fileName(int page, long key, Bitmap bitmap) {
+        // The lower 40 bits of the key are the grid and the place of the part in the grid
+        return page + "-" + Long.toHexString(key & 0xFFFFFFFFFFL) + "-" + bitmap.getWidth() + "x" + bitmap.getHeight();
+    }
+
+
+    /** @return The directory of the document, created the first time, or null if it can't be */
+    private File getDocumentDir() {
+        File dir = documentDir;
+        if (dir == null) {
+            synchronized (this) {
+                dir = documentDir;
+                if (dir == null) {
+                    String hash = hashDocument();
+                    if (hash == null) {
+                        return null;
+                    }
+                    dir = new File(cacheDir, hash);
+                    if (!dir.isDirectory() && !dir.mkdirs()) {
+                        return null;
+                    }
+                    documentDir = dir;
+                }
+            }
+        }
+        return dir;
+    }
+
+    /**
+     * @return A hash identifying the content of the document, without reading it
+     * entirely : its size, its date, and its first and last bytes.
+     */
+    private String hashDocument() {
+        FileInputStream input = null;
+        try {
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            long length = documentFile.length();
+            digest.update((length + ":" + documentFile.lastModified()).getBytes());
+
+            byte[] buffer = new byte[HASHED_BYTES];
+            input = new FileInputStream(documentFile);
+            int read = input.read(buffer);
+            if (read > 0) {
+                digest.update(buffer, 0, read);
+            }
+            if (length > 2 * HASHED_BYTES) {
+                input.getChannel().position(length - HASHED_BYTES);
+                read = input.read(buffer);
+                if (read > 0) {
+                    digest.update(buffer, 0, read);
+                }
+            }
+
+            StringBuilder hash = new StringBuilder();
+            for (byte b : digest.digest()) {
+                hash.append(Integer.toHexString((b & 0xFF) | 0x100).substring(1));
+            }
+            return hash.toString();
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to read " + documentFile, e);
+            return null;
+        } catch (NoSuchAlgorithmException e) {
+            Log.w(TAG, "Unable to hash " + documentFile, e);
+            return null;
+        } finally {
+            closeQuietly(input);
+        }
+    }
+
+    /**
+     * The writer and the LRU index of all the files of a cache directory,
+     * shared by all the caches in this directory.
+     */
+    private static class Store {
+
+        private final File cacheDir;
+
+        /** Writes the parts and maintains the index, one file at a time, ended when idle */
+        final ThreadPoolExecutor writer;
+
+        /** Number of parts waiting to be written */
+        final AtomicInteger pendingWrites = new AtomicInteger();
+
+        /** Buffers of the parts waiting to be written, given back once written */
+        private final ConcurrentLinkedQueue<ByteBuffer> freeBuffers = new ConcurrentLinkedQueue<ByteBuffer>();
+
+        /** Files read since the writer last marked them as recently used, guarded by itself */
+        private final Set<File> pendingTouches = new LinkedHashSet<File>();
+
+        /** Marks all the pending files as recently used at once */
+        private final Runnable touchPendingFiles = new Runnable() {
+            @Override
+            public void run() {
+                List<File> files;
+                synchronized (pendingTouches) {
+                    files = new ArrayList<File>(pendingTouches);
+                    pendingTouches.clear();
+                }
+                for (File file : files) {
+                    touch(file);
+                }
+            }
+        };
+
+        /** The number of bytes all the cached files can use */
+        volatile long maxSize;
+
+        /** All the files of the cache, least recently used first, only used by the writer */
+        private LinkedHashMap<String, Long> index;
+
+        /** Number of bytes of all the files in the index, only used by the writer */
+        private long size;
+
+        Store(File cacheDir) {
+            this.cacheDir = cacheDir;
+            this.writer = new ThreadPoolExecutor(1, 1, WRITER_KEEP_ALIVE, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                    return new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            Process.setThreadPriority(Process.THREAD_PRIORITY_LOWEST);
+                            runnable.run();
+                        }
+                    }, "PDFView-disk-cache");
+                }
+            });
+            this.writer.allowCoreThreadTimeOut(true);
+        }
+
+        /**
+         * @return A buffer of the given length, reused from a written part if possible.
+         * There are at most {@link Constants.Cache#DISK_PENDING_WRITES} of them.
+         */
+        ByteBuffer acquireBuffer(int length) {
+            ByteBuffer buffer = freeBuffers.poll();
+            if (buffer == null || buffer.capacity() < length) {
+                buffer = ByteBuffer.allocate(length);
+            }
+            buffer.clear();
+            buffer.limit(length);
+            return buffer;
+        }
+
+        void releaseBuffer(ByteBuffer buffer) {
+            freeBuffers.offer(buffer);
+        }
+
+        /**
+         * Mark a file as recently used, callable from any thread. The files read
+         * in a row are marked together, a file read several times only once, and
+         * the files read while too many are waiting are left as they are.
+         */
+        void requestTouch(File file) {
+            boolean scheduled;
+            synchronized (pendingTouches) {
+                if (pendingTouches.size() >= MAX_PENDING_TOUCHES) {
+                    return;
+                }
+                scheduled = !pendingTouches.isEmpty();
+                pendingTouches.add(file);
+            }
+            if (!scheduled) {
+                writer.execute(touchPendingFiles);
+            }
+        }
+
+        /** Called by the writer, mark a file as recently used */
+        private void touch(File file) {
+            if (file.setLastModified(System.currentTimeMillis()) && index != null) {
+                Long fileSize = index.remove(file.getPath());
+                if (fileSize != null) {
+                    index.put(file.getPath(), fileSize);
+                }
+            }
+        }
+
+        /** Called by the writer */
+        void write(File file, byte[] pixels, int length) {
+            if (index == null) {
+                loadIndex();
+            }
+
+            File tempFile = new File(file.getPath() + TEMP_SUFFIX);
+            FileOutputStream output = null;
+            try {
+                output = new FileOutputStream(tempFile);
+                output.write(pixels, 0, length);
+            } catch (IOException e) {
+                Log.w(TAG, "Unable to write " + file, e);
+                closeQuietly(output);
+                output = null;
+                tempFile.delete();
+                return;
+            } finally {
+                closeQuietly(output);
+            }
+
+            // Renaming is atomic, readers never see a file being written
+            if (!tempFile.renameTo(file)) {
+                tempFile.delete();
+                return;
+            }
+
+            Long previousSize = index.remove(file.getPath());
+            if (previousSize != null) {
+                size -= previousSize;
+            }
+            index.put(file.getPath(), (long) length);
+            size += length;
+            trimToSize();
+        }
+
+        /** Called by the writer, list all the cached files of all the documents */
+        private void loadIndex() {
+            index = new LinkedHashMap<String, Long>();
+            size = 0;
+            File[] documentDirs = cacheDir.listFiles();
+            if (documentDirs == null) {
+                return;
+            }
+
+            int count = 0;
+            for (File dir : documentDirs) {
+                File[] files = dir.listFiles();
+                count += files != null ? files.length : 0;
+            }
+
+            // The dates are read once, a file touched while sorting doesn't change the order
+            CachedFile[] allFiles = new CachedFile[count];
+            count = 0;
+            for (File dir : documentDirs) {
+                File[] files = dir.listFiles();
+                if (files != null) {
+                    for (int i = 0; i < files.length && count < allFiles.length; i++) {
+                        allFiles[count++] = new CachedFile(files[i]);
+                    }
+                }
+            }
+
+            // Least recently used first
+            Arrays.sort(allFiles, 0, count, new Comparator<CachedFile>() {
+                @Override
+                public int compare(CachedFile lhs, CachedFile rhs) {
+                    return lhs.lastModified < rhs.lastModified ? -1 : lhs.lastModified == rhs.lastModified ? 0 : 1;
+                }
+            });
+            for (int i = 0; i < count; i++) {
+                File file = allFiles[i].file;
+                if (file.getName().endsWith(TEMP_SUFFIX)) {
+                    file.delete();
+                    continue;
+                }
+                index.put(file.getPath(), allFiles[i].length);
+                size += allFiles[i].length;
+            }
+            trimToSize();
+        }
+
+        /** Called by the writer, delete the least recently used files */
+        private void trimToSize() {
+            Iterator<Map.Entry<String, Long>> iterator = index.entrySet().iterator();
+            while (size > maxSize && iterator.hasNext()) {
+                Map.Entry<String, Long> eldest = iterator.next();
+                new File(eldest.getKey()).delete();
+                size -= eldest.getValue();
+                iterator.remove();
+            }
+        }
+    }
+
+    /** A cached file, with its date and size read once */
+    private static class CachedFile {
+
+        final File file;
+
+        final long lastModified;
+
+        final long length;
+
+        CachedFile(File file) {
+            this.file = file;
+            this.lastModified = file.lastModified();
+            this.length = file.length();
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                // Nothing to do
+            }
+        }
+    }
+}
@@ -0,0 +1,211 @@
+/**
+ * Copyright 2014 Joan Zapata
+ *
+ * This file is part of Android-pdfview.
+ *
+ * Android-pdfview is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Android-pdfview is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Android-pdfview.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.joanzapata.pdfview;
+
+import android.content.Context;
+import android.net.Uri;
+
+import com.joanzapata.pdfview.util.FileUtils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Where a document comes from. The native layer only opens files, so
+ * before a document is opened, it's made available as a file or a
+ * content uri, in the background.
+ */
+abstract class DocumentSource {
+
+    /** Prefix of the temporary files of the documents given in memory */
+    private static final String TEMP_FILE_PREFIX = "pdfview-";
+
+    /**
+     * Make the document available, this is a blocking call made in the background.
+     * @return The uri of the document to open, a file or a content uri.
+     */
+    abstract Uri open() throws IOException;
+
+    /** @return The file of the document if it's known before opening it, null otherwise */
+    File getFile() {
+        return null;
+    }
+
+    /** Release what was needed to open the document, once it's not displayed anymore */
+    void close() {
+    }
+
+    /** @return False if the opened file won't be opened again, it's then not worth pooling its documents */
+    boolean isPoolable() {
+        return true;
+    }
+
+    /** A file or a content uri, opened as is */
+    static class UriSource extends DocumentSource {
+
+        private final Uri uri;
+
+        UriSource(Uri uri) {
+            this.uri = uri;
+        }
+
+        @Override
+        Uri open() {
+            return uri;
+        }
+
+        @Override
+        File getFile() {
+            return "file".equals(uri.getScheme()) ? new File(uri.getPath()) : null;
+        }
+    }
+
+    /** An asset, copied in the cache directory unless it's already there */
+    static class AssetSource extends DocumentSource {
+
+        private final Context context;
+
+        private final String assetName;
+
+        AssetSource(Context context, String assetName) {
+            this.context = context;
+            this.assetName = assetName;
+        }
+
+        @Override
+        Uri open() throws IOException {
+            return Uri.fromFile(FileUtils.fileFromAsset(context, assetName));
+        }
+
+        @Override
+        File getFile() {
+            return FileUtils.assetCacheFile(context, assetName);
+        }
+    }
+
+    /** A document given in memory, written in a temporary file deleted when closed */
+    abstract static class TempFileSource extends DocumentSource {
+
+        private final Context context;
+
+        private volatile File tempFile;
+
+        private volatile boolean closed;
+
+        TempFileSource(Context context) {
+            this.context = context;
+        }
+
+        @Override
+        Uri open() throws IOException {
+            File file = File.createTempFile(TEMP_FILE_PREFIX, ".pdf", context.getCacheDir());
+            tempFile = file;
+            write(file);
+            if (closed) {
+                file.delete();
+                throw new IOException("The document has been closed while being written.");
+            }
+            return Uri.fromFile(file);
+        }
+
+        /** Write the document in the given file */
+        abstract void write(File file) throws IOException;
+
+        /** Each document has its own temporary file, deleted when closed */
+        @Override
+        boolean isPoolable() {
+            return false;
+        }
+
+        /** The native document keeps the file open, so it can be deleted right away */
+        @Override
+        void close() {
+            closed = true;
+            File file = tempFile;
+            if (file != null) {
+                file.delete();
+            }
+        }
+    }
+
+    static class BytesSource extends TempFileSource {
+
+        private final byte[] bytes;
+
+        BytesSource(Context context, byte[] bytes) {
+            super(context);
+            this.bytes = bytes;
+        }
+
+        @Override
+        void write(File file) throws IOException {
+            FileOutputStream outputStream = new FileOutputStream(file);
+            try {
+                outputStream.write(bytes);
+            } finally {
+                outputStream.close();
+            }
+        }
+    }
+
+    static class ByteBufferSource extends TempFileSource {
+
+        private final ByteBuffer buffer;
+
+        ByteBufferSource(Context context, ByteBuffer buffer) {
+            super(context);
+            this.buffer = buffer;
+        }
+
+        @Override
+        void write(File file) throws IOException {
+            FileOutputStream outputStream = new FileOutputStream(file);
+            try {
+                // A direct buffer is written without being copied in the java heap,
+                // and the duplicate leaves the position of the buffer of the caller
+                ByteBuffer data = buffer.duplicate();
+                FileChannel channel = outputStream.getChannel();
+                while (data.hasRemaining()) {
+                    channel.write(data);
+                }
+            } finally {
+                outputStream.close();
+            }
+        }
+    }
+
+    static class StreamSource extends TempFileSource {
+
+        private final InputStream inputStream;
+
+        StreamSource(Context context, InputStream inputStream) {
+            super(context);
+            this.inputStream = inputStream;
+        }
+
+        @Override
+        void write(File file) throws IOException {
+            FileUtils.copy(inputStream, file);
+        }
+    }
+}
@@ -20,6 +20,7 @@ package com.joanzapata.pdfview;
 
 import android.graphics.PointF;
 import com.joanzapata.pdfview.PDFView;
+import com.joanzapata.pdfview.util.Constants;
 import com.joanzapata.pdfview.util.DragPinchListener;
 import com.joanzapata.pdfview.util.DragPinchListener.OnDoubleTapListener;
 import com.joanzapata.pdfview.util.DragPinchListener.OnDragListener;
@@ -47,6 +48,12 @@ class DragPinchManager implements OnDragListener, OnPinchListener, OnDoubleTapLi
     
     private boolean swipeVertical;
 
+    private boolean continuousScroll;
+
+    /** Time of the last drag event, and speed of the drag in px/ms */
+    private long lastDragTime;
+    private float velocityX, velocityY;
+
     public DragPinchManager(PDFView pdfView) {
         this.pdfView = pdfView;
         this.isSwipeEnabled = false;
@@ -82,6 +89,11 @@ class DragPinchManager implements OnDragListener, OnPinchListener, OnDoubleTapLi
         startDragTime = System.currentTimeMillis();
         startDragX = x;
         startDragY = y;
+        lastDragTime = startDragTime;
+        velocityX = velocityY = 0;
+        if (continuousScroll) {
+            pdfView.stopAnimation();
+        }
     }
 
     @Override
@@ -89,11 +101,21 @@ class DragPinchManager implements OnDragListener, OnPinchListener, OnDoubleTapLi
         if (isZooming() || isSwipeEnabled) {
             pdfView.moveRelativeTo(dx, dy);
         }
+
+        long time = System.currentTimeMillis();
+        long dt = time - lastDragTime;
+        if (dt > 0) {
+            velocityX = dx / dt;
+            velocityY = dy / dt;
+            lastDragTime = time;
+        }
     }
 
     @Override
     public void endDrag(float x, float y) {
-        if (!isZooming()) {
+        if (continuousScroll) {
+            fling();
+        } else if (!isZooming()) {
             if (isSwipeEnabled) {
             	float distance;
             	if (swipeVertical)
@@ -115,6 +137,24 @@ class DragPinchManager implements OnDragListener, OnPinchListener, OnDoubleTapLi
         }
     }
 
+    /**
+     * In continuous scroll mode, there's no page to snap
+     * to, the document keeps moving in the drag direction.
+     */
+    private void fling() {
+        boolean quickMove = System.currentTimeMillis() - lastDragTime <= QUICK_MOVE_THRESHOLD_TIME;
+        if (!quickMove || !(isZooming() || isSwipeEnabled)) {
+            pdfView.loadPages();
+            return;
+        }
+
+        // The decelerate interpolator starts twice as fast
+        // as its average speed, keep the finger speed.
+        float distanceX = velocityX * Constants.FLING_DURATION / 2;
+        float distanceY = velocityY * Constants.FLING_DURATION / 2;
+        pdfView.startFling(distanceX, distanceY);
+    }
+
     public boolean isZooming() {
         return pdfView.isZooming();
     }
@@ -143,4 +183,8 @@ class DragPinchManager implements OnDragListener, OnPinchListener, OnDoubleTapLi
 		this.swipeVertical = swipeVertical;
 	}
 
+    public void setContinuousScroll(boolean continuousScroll) {
+        this.continuousScroll = continuousScroll;
+    }
+
 }
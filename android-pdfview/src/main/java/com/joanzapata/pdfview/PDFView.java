@@ -23,23 +23,28 @@ import android.graphics.*;
 import android.graphics.Paint.Style;
 import android.net.Uri;
 import android.os.AsyncTask;
+import android.os.SystemClock;
 import android.util.AttributeSet;
+import android.util.Log;
 import android.view.SurfaceView;
 import com.joanzapata.pdfview.exception.FileNotFoundException;
 import com.joanzapata.pdfview.listener.OnDrawListener;
+import com.joanzapata.pdfview.listener.OnErrorListener;
 import com.joanzapata.pdfview.listener.OnLoadCompleteListener;
+import com.joanzapata.pdfview.listener.OnLoadProgressListener;
 import com.joanzapata.pdfview.listener.OnPageChangeListener;
 import com.joanzapata.pdfview.model.PagePart;
 import com.joanzapata.pdfview.util.ArrayUtils;
 import com.joanzapata.pdfview.util.Constants;
-import com.joanzapata.pdfview.util.FileUtils;
+import com.joanzapata.pdfview.util.MemoryUtils;
 import com.joanzapata.pdfview.util.NumberUtils;
 import org.vudroid.core.DecodeService;
 
 import java.io.File;
 import java.io.IOException;
-
-import static com.joanzapata.pdfview.util.Constants.Cache.CACHE_SIZE;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
 
 /**
  * @author Joan Zapata
@@ -58,7 +63,7 @@ import static com.joanzapata.pdfview.util.Constants.Cache.CACHE_SIZE;
  *         - DocumentPage = A page of the PDF document.
  *         - UserPage = A page as defined by the user.
  *         By default, they're the same. But the user can change the pages order
- *         using {@link #load(Uri, OnLoadCompleteListener, int[])}. In this
+ *         using {@link #load(DocumentSource, OnLoadCompleteListener, int[])}. In this
  *         particular case, a userPage of 5 can refer to a documentPage of 17.
  */
 public class PDFView extends SurfaceView {
@@ -68,6 +73,26 @@ public class PDFView extends SurfaceView {
     /** Rendered parts go to the cache manager */
     private CacheManager cacheManager;
 
+    /** Bitmaps evicted from the cache go to the pool, to be drawn into again */
+    private BitmapPool bitmapPool;
+
+    /** Rendered parts are also kept on the disk for the next time, if enabled */
+    private DiskTileCache diskTileCache;
+
+    /** Number of bytes the disk cache can use, 0 to disable it */
+    private long diskCacheSize = 0;
+
+    /** Number of bytes of the native stores of all the handles on the document */
+    private int fitzMemory;
+
+    /** Thumbnails of all the pages rendered in the background, if enabled */
+    private ThumbnailStrip thumbnailStrip;
+
+    private boolean thumbnailStripEnabled = false;
+
+    /** Where the document comes from */
+    private DocumentSource documentSource;
+
     /** Animation manager manage all offset and zoom animation */
     private AnimationManager animationManager;
 
@@ -101,10 +126,13 @@ public class PDFView extends SurfaceView {
     /** The index of the current sequence */
     private int currentFilteredPage;
 
-    /** The actual width and height of the pages in the PDF document */
-    private int pageWidth, pageHeight;
+    /** The actual width and height of each filtered user page in the PDF document */
+    private int[] pageWidths, pageHeights;
+
+    /** The position of each filtered user page on the big strip */
+    private PageLayout pageLayout;
 
-    /** The optimal width and height of the pages to fit the component size */
+    /** The optimal width and height of the current page to fit the component size */
     private float optimalPageWidth, optimalPageHeight;
 
     /**
@@ -124,6 +152,10 @@ public class PDFView extends SurfaceView {
     /** The zoom level, always >= 1 */
     private float zoom = 1f;
 
+    /** Speed of the last move of the document on the screen in px/ms, and when it happened */
+    private float velocityX, velocityY;
+    private long lastMoveTime;
+
     /** Coordinates of the left mask on the screen */
     private RectF leftMask;
 
@@ -142,15 +174,24 @@ public class PDFView extends SurfaceView {
     /** Async task used during the loading phase to decode a PDF document */
     private DecodingAsyncTask decodingAsyncTask;
 
-    /** Async task always playing in the background and proceeding rendering tasks */
-    private RenderingAsyncTask renderingAsyncTask;
+    /** Pool of workers always playing in the background and proceeding rendering tasks */
+    private RenderingManager renderingManager;
+
+    /** Number of workers used to render the page parts */
+    private int renderingThreads = RenderingManager.defaultThreadCount();
 
     /** Call back object to call when the PDF is loaded */
     private OnLoadCompleteListener onLoadCompleteListener;
 
+    /** Call back object to call while the PDF is loading */
+    private OnLoadProgressListener onLoadProgressListener;
+
     /** Call back object to call when the page has changed */
     private OnPageChangeListener onPageChangeListener;
 
+    /** Call back object to call when the PDF can't be opened */
+    private OnErrorListener onErrorListener;
+
     /** Call back object to call when the above layer is to drawn */
     private OnDrawListener onDrawListener;
 
@@ -163,6 +204,11 @@ public class PDFView extends SurfaceView {
     /** Paint object for drawing debug stuff */
     private Paint debugPaint;
 
+    /** Reused by drawPage() and drawPart() to avoid allocations while drawing */
+    private final Rect srcRect = new Rect();
+    private final RectF dstRect = new RectF();
+    private final RectF visibleBounds = new RectF();
+
     /** Paint object for minimap background */
     private Paint paintMinimapBack;
 
@@ -175,7 +221,7 @@ public class PDFView extends SurfaceView {
     private RectF minimapBounds;
 
     /** Bounds of the minimap */
-    private RectF minimapScreenBounds;
+    private final RectF minimapScreenBounds = new RectF();
 
     private int defaultPage = 0;
 
@@ -184,11 +230,24 @@ public class PDFView extends SurfaceView {
     /** True if should scroll through pages vertically instead of horizontally */
     private boolean swipeVertical = false;
 
+    /** True if the pages are scrolled freely instead of being shown one by one */
+    private boolean continuousScroll = false;
+
+    /** In continuous scroll mode, 1 when scrolling towards the end of the document, -1 otherwise */
+    private int scrollDirection = 1;
+
+    /** In continuous scroll mode, the first and last pages loaded by the last call to loadPages() */
+    private int loadedFirstPage, loadedLastPage = -1;
+
+    /** The quantized zoom level of the parts loaded by the last call to loadPages(), 0 if none */
+    private float loadedZoom;
+
     /** Construct the initial view */
     public PDFView(Context context, AttributeSet set) {
         super(context, set);
         miniMapRequired = false;
-        cacheManager = new CacheManager();
+        bitmapPool = new BitmapPool();
+        cacheManager = new CacheManager(bitmapPool, MemoryUtils.defaultCacheSize(context));
         animationManager = new AnimationManager(this);
         dragPinchManager = new DragPinchManager(this);
 
@@ -209,11 +268,11 @@ public class PDFView extends SurfaceView {
         setWillNotDraw(false);
     }
 
-    private void load(Uri uri, OnLoadCompleteListener listener) {
-        load(uri, listener, null);
+    private void load(DocumentSource documentSource, OnLoadCompleteListener listener) {
+        load(documentSource, listener, null);
     }
 
-    private void load(Uri uri, OnLoadCompleteListener onLoadCompleteListener, int[] userPages) {
+    private void load(DocumentSource documentSource, OnLoadCompleteListener onLoadCompleteListener, int[] userPages) {
 
         if (!recycled) {
             throw new IllegalStateException("Don't call load on a PDF View without recycling it first.");
@@ -227,13 +286,23 @@ public class PDFView extends SurfaceView {
         }
 
         this.onLoadCompleteListener = onLoadCompleteListener;
+        this.documentSource = documentSource;
 
-        // Start decoding document
-        decodingAsyncTask = new DecodingAsyncTask(uri, this);
-        decodingAsyncTask.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+        // Start decoding document, from the page shown first
+        int firstPage = defaultPage - 1;
+        if (originalUserPages != null) {
+            firstPage = originalUserPages[Math.max(0, Math.min(firstPage, originalUserPages.length - 1))];
+        }
+        // Only the documents which stay the same file are worth caching on the disk
+        File documentFile = documentSource.getFile();
+        if (diskCacheSize > 0 && documentFile != null) {
+            File cacheDir = new File(getContext().getCacheDir(), Constants.Cache.DISK_CACHE_DIR);
+            diskTileCache = new DiskTileCache(cacheDir, documentFile, diskCacheSize);
+        }
+        renderingManager = new RenderingManager(this, bitmapPool, diskTileCache, renderingThreads);
 
-        renderingAsyncTask = new RenderingAsyncTask(this);
-        renderingAsyncTask.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+        decodingAsyncTask = new DecodingAsyncTask(documentSource, firstPage, getHandleFitzMemory(), renderingManager, this);
+        decodingAsyncTask.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
     }
 
     /**
@@ -258,6 +327,7 @@ public class PDFView extends SurfaceView {
                 currentFilteredPage = pageNb;
             }
         }
+        calculateCurrentPageBounds();
 
         // Reset the zoom and center the page on the screen
         resetZoom();
@@ -295,18 +365,49 @@ public class PDFView extends SurfaceView {
         this.onDrawListener = onDrawListener;
     }
 
+    private void setOnLoadProgressListener(OnLoadProgressListener onLoadProgressListener) {
+        this.onLoadProgressListener = onLoadProgressListener;
+    }
+
+    private void setOnErrorListener(OnErrorListener onErrorListener) {
+        this.onErrorListener = onErrorListener;
+    }
+
     public void recycle() {
 
         // Stop tasks
-        if (renderingAsyncTask != null) {
-            renderingAsyncTask.cancel(true);
+        if (renderingManager != null) {
+            renderingManager.stop();
         }
         if (decodingAsyncTask != null) {
-            decodingAsyncTask.cancel(true);
+            if (decodingAsyncTask.isLoaded()) {
+                // Give the document back to the pool, so it's not parsed again if shown again
+                decodeService.recycle();
+            } else {
+                // The task is still using the decode service, it will release it
+                decodingAsyncTask.cancel(true);
+            }
+            decodingAsyncTask = null;
+            decodeService = null;
+        }
+        if (diskTileCache != null) {
+            diskTileCache.close();
+            diskTileCache = null;
+        }
+        if (thumbnailStrip != null) {
+            thumbnailStrip.stop();
+            thumbnailStrip = null;
+        }
+        if (documentSource != null) {
+            documentSource.close();
+            documentSource = null;
         }
 
         // Clear caches
         cacheManager.recycle();
+        bitmapPool.clear();
+        loadedLastPage = -1;
+        loadedZoom = 0;
 
         recycled = true;
         state = State.DEFAULT;
@@ -321,6 +422,9 @@ public class PDFView extends SurfaceView {
     protected void onSizeChanged(int w, int h, int oldw, int oldh) {
         animationManager.stopAll();
         calculateOptimalWidthAndHeight();
+        if (pageLayout == null) {
+            return;
+        }
         loadPages();
         if (swipeVertical)
         	moveTo(currentXOffset, calculateCenterOffsetForPage(currentFilteredPage));
@@ -362,7 +466,7 @@ public class PDFView extends SurfaceView {
         // Draws background
         canvas.drawColor(Color.WHITE);
 
-        if (state != State.SHOWN) {
+        if (state != State.SHOWN || pageLayout == null) {
             return;
         }
 
@@ -371,34 +475,34 @@ public class PDFView extends SurfaceView {
         float currentYOffset = this.currentYOffset;
         canvas.translate(currentXOffset, currentYOffset);
 
-        // Draws thumb nails
-        for (PagePart part : cacheManager.getThumbnails()) {
-            drawPart(canvas, part);
-        }
-
-        // Draws parts
-        for (PagePart part : cacheManager.getPageParts()) {
-            drawPart(canvas, part);
+        // Draws the pages on the screen
+        int lastPage = getLastVisiblePage();
+        for (int page = getFirstVisiblePage(); page <= lastPage; page++) {
+            drawPage(canvas, page);
         }
 
         // Draws the user layer
         if (onDrawListener != null) {
-            canvas.translate(toCurrentScale(currentFilteredPage * optimalPageWidth), 0);
+            float pageX = toCurrentScale(pageLayout.getPageX(currentFilteredPage));
+            float pageY = toCurrentScale(pageLayout.getPageY(currentFilteredPage));
+            canvas.translate(pageX, pageY);
 
             onDrawListener.onLayerDrawn(canvas, //
                     toCurrentScale(optimalPageWidth), //
                     toCurrentScale(optimalPageHeight),
                     currentPage);
 
-            canvas.translate(-toCurrentScale(currentFilteredPage * optimalPageWidth), 0);
+            canvas.translate(-pageX, -pageY);
         }
 
         // Restores the canvas position
         canvas.translate(-currentXOffset, -currentYOffset);
 
         // Draws mask around current page
-        canvas.drawRect(leftMask, maskPaint);
-        canvas.drawRect(rightMask, maskPaint);
+        if (!continuousScroll) {
+            canvas.drawRect(leftMask, maskPaint);
+            canvas.drawRect(rightMask, maskPaint);
+        }
 
         // If minimap shown draws it
         if (userWantsMinimap && miniMapRequired) {
@@ -410,6 +514,47 @@ public class PDFView extends SurfaceView {
         invalidate();
     }
 
+    /**
+     * Draw the cached parts of a page which are on the screen, over the thumbnail
+     * of the page unless these parts cover the whole visible area of the page.
+     */
+    private void drawPage(Canvas canvas, int userPage) {
+
+        // Page relative bounds of the screen, limited to the page
+        float pageWidth = toCurrentScale(pageLayout.getPageWidth(userPage));
+        float pageHeight = toCurrentScale(pageLayout.getPageHeight(userPage));
+        float left = (-currentXOffset - toCurrentScale(pageLayout.getPageX(userPage))) / pageWidth;
+        float top = (-currentYOffset - toCurrentScale(pageLayout.getPageY(userPage))) / pageHeight;
+        visibleBounds.set(left, top, left + getWidth() / pageWidth, top + getHeight() / pageHeight);
+        if (!visibleBounds.intersect(0, 0, 1, 1)) {
+            return;
+        }
+
+        // The parts come sorted by resolution, the sharper ones are drawn last.
+        // Indexed loops avoid allocating iterators.
+        List<PagePart> parts = cacheManager.getPageParts(userPage);
+        int nbParts = parts.size();
+        PagePart thumbnail = cacheManager.getThumbnail(userPage);
+        if (!cacheManager.isCovered(userPage, visibleBounds, 0)) {
+            if (thumbnail != null) {
+                drawPart(canvas, thumbnail);
+            } else if (thumbnailStrip != null) {
+                // Not even the thumbnail yet, the one of the strip will do
+                float pageX = toCurrentScale(pageLayout.getPageX(userPage));
+                float pageY = toCurrentScale(pageLayout.getPageY(userPage));
+                dstRect.set(pageX, pageY, pageX + pageWidth, pageY + pageHeight);
+                thumbnailStrip.draw(canvas, userPage, dstRect, paint);
+            }
+        }
+
+        for (int i = 0; i < nbParts; i++) {
+            PagePart part = parts.get(i);
+            if (RectF.intersects(visibleBounds, part.getPageRelativeBounds())) {
+                drawPart(canvas, part);
+            }
+        }
+    }
+
     /** Draw a given PagePart on the canvas */
     private void drawPart(Canvas canvas, PagePart part) {
         // Can seem strange, but avoid lot of calls
@@ -417,26 +562,25 @@ public class PDFView extends SurfaceView {
         Bitmap renderedBitmap = part.getRenderedBitmap();
 
         // Move to the target page
-        float localTranslationX = 0;
-        float localTranslationY = 0;
-        if (swipeVertical)
-        	localTranslationY = toCurrentScale(part.getUserPage() * optimalPageHeight);
-        else
-        	localTranslationX = toCurrentScale(part.getUserPage() * optimalPageWidth);    	
+        int userPage = part.getUserPage();
+        float pageWidth = pageLayout.getPageWidth(userPage);
+        float pageHeight = pageLayout.getPageHeight(userPage);
+        float localTranslationX = toCurrentScale(pageLayout.getPageX(userPage));
+        float localTranslationY = toCurrentScale(pageLayout.getPageY(userPage));
         canvas.translate(localTranslationX, localTranslationY);
         
-        Rect srcRect = new Rect(0, 0, renderedBitmap.getWidth(), //
+        srcRect.set(0, 0, renderedBitmap.getWidth(), //
                 renderedBitmap.getHeight());
 
-        float offsetX = toCurrentScale(pageRelativeBounds.left * optimalPageWidth);
-        float offsetY = toCurrentScale(pageRelativeBounds.top * optimalPageHeight);
-        float width = toCurrentScale(pageRelativeBounds.width() * optimalPageWidth);
-        float height = toCurrentScale(pageRelativeBounds.height() * optimalPageHeight);
+        float offsetX = toCurrentScale(pageRelativeBounds.left * pageWidth);
+        float offsetY = toCurrentScale(pageRelativeBounds.top * pageHeight);
+        float width = toCurrentScale(pageRelativeBounds.width() * pageWidth);
+        float height = toCurrentScale(pageRelativeBounds.height() * pageHeight);
 
         // If we use float values for this rectangle, there will be
         // a possible gap between page parts, especially when
         // the zoom level is high.
-        RectF dstRect = new RectF((int) offsetX, (int) offsetY, //
+        dstRect.set((int) offsetX, (int) offsetY, //
                 (int) (offsetX + width), //
                 (int) (offsetY + height));
 
@@ -477,9 +621,32 @@ public class PDFView extends SurfaceView {
         }
 
         // Cancel all current tasks
-        renderingAsyncTask.removeAllTasks();
+        renderingManager.removeAllTasks();
         cacheManager.makeANewSet();
 
+        // Right after a zoom, render the visible area at a lower resolution first,
+        // so it's shown quickly while the parts at the current zoom level are
+        // rendered. Parts of both levels stay in the cache, zooming back to one of
+        // them will reuse them instead of rendering them again.
+        int capacity = cacheManager.getPartsCapacity();
+        int parts = 0;
+        float renderZoom = quantizeZoom(zoom);
+        float coarseZoom = quantizeZoom(Math.max(1f, renderZoom / Constants.COARSE_ZOOM_RATIO));
+        boolean zoomChanged = renderZoom != loadedZoom;
+        loadedZoom = renderZoom;
+        if (zoomChanged && coarseZoom < renderZoom) {
+            int lastPage = getLastVisiblePage();
+            for (int page = getFirstVisiblePage(); page <= lastPage && parts < capacity; page++) {
+                parts += loadPage(page, capacity - parts, true, coarseZoom);
+            }
+        }
+
+        if (continuousScroll) {
+            loadVisiblePages(renderZoom, capacity, parts);
+            invalidate();
+            return;
+        }
+
         // Find current index in filtered user pages
         int index = currentPage;
         if (filteredUserPageIndexes != null) {
@@ -487,18 +654,117 @@ public class PDFView extends SurfaceView {
         }
 
         // Loop through the pages like [...][4][2][0][1][3][...]
-        // loading as many parts as it can.
-        int parts = 0;
-        for (int i = 0; i <= Constants.LOADED_SIZE / 2 && parts < CACHE_SIZE; i++) {
-            parts += loadPage(index + i, CACHE_SIZE - parts);
-            if (i != 0 && parts < CACHE_SIZE) {
-                parts += loadPage(index - i, CACHE_SIZE - parts);
+        // loading as many parts as the cache can keep, starting
+        // with the pages the document is moving towards.
+        int direction = getMotionDirection();
+        if (direction == 0) {
+            direction = 1;
+        }
+        for (int i = 0; i <= Constants.LOADED_SIZE / 2 && parts < capacity; i++) {
+            parts += loadPage(index + direction * i, capacity - parts, false, renderZoom);
+            if (i != 0 && parts < capacity) {
+                parts += loadPage(index - direction * i, capacity - parts, false, renderZoom);
             }
         }
 
         invalidate();
     }
 
+    /**
+     * In continuous scroll mode, load the parts of the pages visible on
+     * the screen, then the next pages in the scroll direction, as long
+     * as the cache can keep them. The faster the document moves, the
+     * more pages are prefetched.
+     * @param renderZoom The zoom level to render the parts at.
+     * @param capacity   The number of parts the cache can keep.
+     * @param parts      The number of parts already loaded.
+     */
+    private void loadVisiblePages(float renderZoom, int capacity, int parts) {
+        int firstPage = getFirstVisiblePage();
+        int lastPage = getLastVisiblePage();
+
+        for (int page = firstPage; page <= lastPage && parts < capacity; page++) {
+            parts += loadPage(page, capacity - parts, true, renderZoom);
+        }
+
+        int direction = getMotionDirection();
+        if (direction == 0) {
+            direction = scrollDirection;
+        }
+
+        // Prefetch at least a few pages, and all the pages the
+        // document will go through in the look ahead time.
+        float speed = Math.abs(swipeVertical ? getVelocityY() : getVelocityX());
+        float lookAheadEnd = toRealScale(direction > 0 //
+                ? (swipeVertical ? getHeight() - currentYOffset : getWidth() - currentXOffset) + speed * Constants.LOOK_AHEAD_TIME //
+                : (swipeVertical ? -currentYOffset : -currentXOffset) - speed * Constants.LOOK_AHEAD_TIME);
+
+        int prefetchedPage = direction > 0 ? lastPage : firstPage;
+        int nbPrefetchedPages = Math.max(Constants.PREFETCHED_PAGES, //
+                Math.abs(pageLayout.getPageAtOffset(lookAheadEnd) - prefetchedPage));
+        for (int i = 0; i < nbPrefetchedPages && parts < capacity; i++) {
+            prefetchedPage += direction;
+            if (prefetchedPage < 0 || prefetchedPage >= pageLayout.getPageCount()) {
+                break;
+            }
+            parts += loadPage(prefetchedPage, capacity - parts, false, renderZoom);
+        }
+
+        loadedFirstPage = Math.min(firstPage, prefetchedPage);
+        loadedLastPage = Math.max(lastPage, prefetchedPage);
+    }
+
+    /**
+     * @param zoom A zoom level.
+     * @return The nearest zoom level the parts are rendered at, see
+     * {@link Constants#ZOOM_LEVELS_PER_DOUBLING}. Small zoom changes
+     * keep the same level, so the cached parts can still be used.
+     */
+    private float quantizeZoom(float zoom) {
+        int levelsPerDoubling = Constants.ZOOM_LEVELS_PER_DOUBLING;
+        long level = Math.round(levelsPerDoubling * Math.log(zoom) / Math.log(2));
+        return (float) Math.pow(2, (double) level / levelsPerDoubling);
+    }
+
+    /**
+     * @return 1 if the document is moving towards its next pages, -1 if it's
+     * moving towards its previous pages, 0 if it's not moving.
+     */
+    private int getMotionDirection() {
+        float velocity = swipeVertical ? getVelocityY() : getVelocityX();
+        return velocity < 0 ? 1 : velocity > 0 ? -1 : 0;
+    }
+
+    /** @return The speed of the document on the screen in px/ms, 0 if it's not moving */
+    private float getVelocityX() {
+        return SystemClock.uptimeMillis() - lastMoveTime > Constants.MOTION_TIMEOUT ? 0 : velocityX;
+    }
+
+    /** @return The speed of the document on the screen in px/ms, 0 if it's not moving */
+    private float getVelocityY() {
+        return SystemClock.uptimeMillis() - lastMoveTime > Constants.MOTION_TIMEOUT ? 0 : velocityY;
+    }
+
+    /**
+     * @return True if the given page is neither on the screen nor the current page,
+     * its parts are then only rendered when there's nothing else to render.
+     */
+    private boolean isPrefetched(int userPage) {
+        return userPage != currentFilteredPage && (userPage < getFirstVisiblePage() || userPage > getLastVisiblePage());
+    }
+
+    /** @return The first page visible on the screen */
+    private int getFirstVisiblePage() {
+        float start = swipeVertical ? -currentYOffset : -currentXOffset;
+        return pageLayout.getPageAtOffset(toRealScale(start));
+    }
+
+    /** @return The last page visible on the screen */
+    private int getLastVisiblePage() {
+        float end = swipeVertical ? getHeight() - currentYOffset : getWidth() - currentXOffset;
+        return pageLayout.getPageAtOffset(toRealScale(end));
+    }
+
     /**
      * Render a page, creating 1 to <i>nbOfPartsLoadable</i> page parts. <br><br>
      * <p/>
@@ -511,9 +777,14 @@ public class PDFView extends SurfaceView {
      * moves the part up in the cache.
      * @param userPage          The user page to load.
      * @param nbOfPartsLoadable Maximum number of parts it can load.
+     * @param visibleOnly       True to skip the parts outside the screen.
+     * @param renderZoom        The zoom level to render the parts at. The thumbnail is
+     *                          only loaded with the parts at the current quantized zoom level.
+     *                          The parts at a lower level are skipped where the cached
+     *                          parts of a higher level already cover them.
      * @return The number of parts loaded.
      */
-    private int loadPage(final int userPage, final int nbOfPartsLoadable) {
+    private int loadPage(final int userPage, final int nbOfPartsLoadable, boolean visibleOnly, float renderZoom) {
 
         // Finds the document page associated with the given userPage
         int documentPage = userPage;
@@ -528,16 +799,16 @@ public class PDFView extends SurfaceView {
         if (documentPage < 0 || userPage >= documentPageCount) {
             return 0;
         }
+        float pageWidth = pageLayout.getPageWidth(userPage);
+        float pageHeight = pageLayout.getPageHeight(userPage);
 
         // Render thumbnail of the page
-        if (!cacheManager.containsThumbnail(userPage, documentPage, //
-                (int) (optimalPageWidth * Constants.THUMBNAIL_RATIO), //
-                (int) (optimalPageHeight * Constants.THUMBNAIL_RATIO), //
-                new RectF(0, 0, 1, 1))) {
-            renderingAsyncTask.addRenderingTask(userPage, documentPage, //
-                    (int) (optimalPageWidth * Constants.THUMBNAIL_RATIO), //
-                    (int) (optimalPageHeight * Constants.THUMBNAIL_RATIO), //
-                    new RectF(0, 0, 1, 1), true, 0);
+        long thumbnailKey = PagePart.thumbnailKey(userPage);
+        if (renderZoom == quantizeZoom(zoom) && !cacheManager.containsThumbnail(thumbnailKey)) {
+            renderingManager.addRenderingTask(userPage, documentPage, //
+                    (int) (pageWidth * Constants.THUMBNAIL_RATIO), //
+                    (int) (pageHeight * Constants.THUMBNAIL_RATIO), //
+                    new RectF(0, 0, 1, 1), true, 0, thumbnailKey, isPrefetched(userPage));
         }
 
         // When we want to render a 256x256 bloc, we also need to provide
@@ -545,33 +816,31 @@ public class PDFView extends SurfaceView {
         // the PDF page. These four coordinates are ratios (0 -> 1), where
         // (0,0) is the top left corner of the PDF page, and (1,1) is the
         // bottom right corner.
-        float ratioX = 1f / (float) optimalPageWidth;
-        float ratioY = 1f / (float) optimalPageHeight;
-        final float partHeight = (Constants.PART_SIZE * ratioY) / zoom;
-        final float partWidth = (Constants.PART_SIZE * ratioX) / zoom;
+        float ratioX = 1f / pageWidth;
+        float ratioY = 1f / pageHeight;
+        final float partHeight = (Constants.PART_SIZE * ratioY) / renderZoom;
+        final float partWidth = (Constants.PART_SIZE * ratioX) / renderZoom;
         final int nbRows = (int) Math.ceil(1f / partHeight);
         final int nbCols = (int) Math.ceil(1f / partWidth);
         final float pageRelativePartWidth = 1f / (float) nbCols;
         final float pageRelativePartHeight = 1f / (float) nbRows;
+        final boolean prefetch = isPrefetched(userPage);
+        final boolean coarse = renderZoom < quantizeZoom(zoom);
 
         // To improve user experience, we need to start displaying the
         // 256x256 blocs with the middle of the screen. Imagine the cut
         // page as a grid. This part calculates which cell of this grid
         // is currently in the middle of the screen, given the current
-        // zoom level and the offsets.
-        float middleOfScreenX = (-currentXOffset + getWidth() / 2);
-        float middleOfScreenY = (-currentYOffset + getHeight() / 2);
-        float middleOfScreenPageX;
-        float middleOfScreenPageY;
-        if (!swipeVertical) {
-        	middleOfScreenPageX = middleOfScreenX - userPage * toCurrentScale(optimalPageWidth);
-        	middleOfScreenPageY = middleOfScreenY;
-        } else {
-        	middleOfScreenPageY = middleOfScreenY - userPage * toCurrentScale(optimalPageHeight);
-        	middleOfScreenPageX = middleOfScreenX;
-        }
-        float middleOfScreenPageXRatio = middleOfScreenPageX / toCurrentScale(optimalPageWidth);
-        float middleOfScreenPageYRatio = middleOfScreenPageY / toCurrentScale(optimalPageHeight);
+        // zoom level and the offsets. While moving, the middle of the
+        // screen is taken a bit ahead of the motion.
+        float lookAheadX = NumberUtils.limit(-getVelocityX() * Constants.LOOK_AHEAD_TIME, -getWidth() / 2, getWidth() / 2);
+        float lookAheadY = NumberUtils.limit(-getVelocityY() * Constants.LOOK_AHEAD_TIME, -getHeight() / 2, getHeight() / 2);
+        float middleOfScreenX = (-currentXOffset + getWidth() / 2) + lookAheadX;
+        float middleOfScreenY = (-currentYOffset + getHeight() / 2) + lookAheadY;
+        float middleOfScreenPageX = middleOfScreenX - toCurrentScale(pageLayout.getPageX(userPage));
+        float middleOfScreenPageY = middleOfScreenY - toCurrentScale(pageLayout.getPageY(userPage));
+        float middleOfScreenPageXRatio = middleOfScreenPageX / toCurrentScale(pageWidth);
+        float middleOfScreenPageYRatio = middleOfScreenPageY / toCurrentScale(pageHeight);
         int startingRow = (int) (middleOfScreenPageYRatio * nbRows);
         int startingCol = (int) (middleOfScreenPageXRatio * nbCols);
 
@@ -579,6 +848,18 @@ public class PDFView extends SurfaceView {
         startingRow = NumberUtils.limit(startingRow, 0, nbRows);
         startingCol = NumberUtils.limit(startingCol, 0, nbCols);
 
+        // Page relative bounds of the screen, if only the visible parts are wanted
+        final RectF visibleBounds;
+        if (visibleOnly) {
+            float left = (-currentXOffset - toCurrentScale(pageLayout.getPageX(userPage))) / toCurrentScale(pageWidth);
+            float top = (-currentYOffset - toCurrentScale(pageLayout.getPageY(userPage))) / toCurrentScale(pageHeight);
+            visibleBounds = new RectF(left, top, //
+                    left + getWidth() / toCurrentScale(pageWidth), //
+                    top + getHeight() / toCurrentScale(pageHeight));
+        } else {
+            visibleBounds = null;
+        }
+
         // Prepare the loop listener
         class SpiralLoopListenerImpl implements SpiralLoopManager.SpiralLoopListener {
             int nbItemTreated = 0;
@@ -605,19 +886,25 @@ public class PDFView extends SurfaceView {
                 renderWidth *= relWidth;
                 renderHeight *= relHeight;
                 RectF pageRelativeBounds = new RectF(relX, relY, relX + relWidth, relY + relHeight);
+                if (visibleBounds != null && !RectF.intersects(visibleBounds, pageRelativeBounds)) {
+                    return true;
+                }
+                if (coarse && cacheManager.isCovered(userPage, pageRelativeBounds, nbRows * nbCols + 1)) {
+                    return true;
+                }
 
                 if (renderWidth != 0 && renderHeight != 0) {
 
                     // Check it the calculated part is already contained in the Cache
                     // If it is, this call will insure the part will go to the right
                     // place in the cache and won't be deleted if the cache need space.
-                    if (!cacheManager.upPartIfContained(userPage, documentPageFinal, //
-                            renderWidth, renderHeight, pageRelativeBounds, nbItemTreated)) {
+                    long key = PagePart.key(userPage, nbRows, nbCols, row, col);
+                    if (!cacheManager.upPartIfContained(key, nbItemTreated)) {
 
                         // If not already in cache, register the rendering
                         // task for further execution.
-                        renderingAsyncTask.addRenderingTask(userPage, documentPageFinal, //
-                                renderWidth, renderHeight, pageRelativeBounds, false, nbItemTreated);
+                        renderingManager.addRenderingTask(userPage, documentPageFinal, //
+                                renderWidth, renderHeight, pageRelativeBounds, false, nbItemTreated, key, prefetch);
                     }
 
                 }
@@ -639,24 +926,103 @@ public class PDFView extends SurfaceView {
         return spiralLoopListener.nbItemTreated;
     }
 
-    /** Called when the PDF is loaded */
-    public void loadComplete(DecodeService decodeService) {
+    /**
+     * Called when the document is opened and the size of the first page is known.
+     * The document is shown right away, the sizes of the other pages being estimated.
+     * @param decodeService       The decode service of the document.
+     * @param documentPageWidths  The estimated width of each document page.
+     * @param documentPageHeights The estimated height of each document page.
+     */
+    void documentOpened(DecodeService decodeService, int[] documentPageWidths, int[] documentPageHeights) {
         this.decodeService = decodeService;
-        this.documentPageCount = decodeService.getPageCount();
-
-        // We assume all the pages are the same size
-        this.pageWidth = decodeService.getPageWidth(0);
-        this.pageHeight = decodeService.getPageHeight(0);
+        this.documentPageCount = documentPageWidths.length;
+        setPageSizes(documentPageWidths, documentPageHeights);
+        renderingManager.start(decodeService);
         state = State.LOADED;
         calculateOptimalWidthAndHeight();
-
-        // Notify the listener
         jumpTo(defaultPage);
+    }
+
+    /** Called each time the size of some more pages is known */
+    void loadProgress(int loadedPages, int nbPages) {
+        if (onLoadProgressListener != null) {
+            onLoadProgressListener.loadProgress(loadedPages, nbPages);
+        }
+    }
+
+    /**
+     * Called when the document can't be opened, or fails while its pages are read.
+     * The view is left as it is, empty if the document wasn't opened yet.
+     */
+    void loadError(Throwable t) {
+        Log.e(TAG, "Unable to load the document", t);
+        if (onErrorListener != null) {
+            onErrorListener.onError(t);
+        }
+    }
+
+    /**
+     * Called when the size of every page is known, after {@link #documentOpened}.
+     * @param documentPageWidths  The width of each document page.
+     * @param documentPageHeights The height of each document page.
+     */
+    void loadComplete(int[] documentPageWidths, int[] documentPageHeights) {
+        int[] estimatedPageWidths = pageWidths;
+        int[] estimatedPageHeights = pageHeights;
+        setPageSizes(documentPageWidths, documentPageHeights);
+
+        // The pages without the estimated size must be rendered again, at the right place
+        boolean layoutChanged = false;
+        for (int i = 0; i < pageWidths.length && !layoutChanged; i++) {
+            layoutChanged = pageWidths[i] != estimatedPageWidths[i] || pageHeights[i] != estimatedPageHeights[i];
+        }
+        if (layoutChanged) {
+            // First, so the parts rendered at the estimated size don't come back into the cache
+            renderingManager.layoutChanged();
+            for (int i = 0; i < pageWidths.length; i++) {
+                if (pageWidths[i] != estimatedPageWidths[i] || pageHeights[i] != estimatedPageHeights[i]) {
+                    cacheManager.recyclePage(i);
+                }
+            }
+            animationManager.stopAll();
+            calculateOptimalWidthAndHeight();
+            loadedZoom = 0;
+            if (pageLayout != null) {
+                loadPages();
+                if (swipeVertical)
+                    moveTo(currentXOffset, calculateCenterOffsetForPage(currentFilteredPage));
+                else
+                    moveTo(calculateCenterOffsetForPage(currentFilteredPage), currentYOffset);
+            }
+        }
+
+        int nbPages = pageWidths.length;
+        if (thumbnailStripEnabled) {
+            int[] documentPages = new int[nbPages];
+            for (int i = 0; i < nbPages; i++) {
+                documentPages[i] = filteredUserPages != null ? filteredUserPages[i] : i;
+            }
+            thumbnailStrip = new ThumbnailStrip(this, pageWidths, pageHeights, documentPages, Constants.Cache.STRIP_SIZE);
+            thumbnailStrip.start(decodeService, currentFilteredPage);
+        }
+        loadProgress(documentPageCount, documentPageCount);
         if (onLoadCompleteListener != null) {
             onLoadCompleteListener.loadComplete(documentPageCount);
         }
     }
 
+    /** Pages may have different sizes, the page layout takes care of it */
+    private void setPageSizes(int[] documentPageWidths, int[] documentPageHeights) {
+        int nbPages = filteredUserPages != null ? filteredUserPages.length : documentPageCount;
+        this.pageWidths = new int[nbPages];
+        this.pageHeights = new int[nbPages];
+        for (int i = 0; i < nbPages; i++) {
+            int documentPage = filteredUserPages != null ? filteredUserPages[i] : i;
+            pageWidths[i] = documentPageWidths[documentPage];
+            pageHeights[i] = documentPageHeights[documentPage];
+        }
+    }
+
     /**
      * Called when a rendering task is over and
      * a PagePart has been freshly created.
@@ -703,18 +1069,18 @@ public class PDFView extends SurfaceView {
      */
     private float calculateCenterOffsetForPage(int pageNb) {
     	if (swipeVertical) {
-    		float imageY = -(pageNb * optimalPageHeight);
-	        imageY += getHeight() / 2 - optimalPageHeight / 2;
+    		float imageY = -pageLayout.getPageY(pageNb);
+	        imageY += getHeight() / 2 - pageLayout.getPageHeight(pageNb) / 2;
 	        return imageY;
     	} else {
-	        float imageX = -(pageNb * optimalPageWidth);
-	        imageX += getWidth() / 2 - optimalPageWidth / 2;
+	        float imageX = -pageLayout.getPageX(pageNb);
+	        imageX += getWidth() / 2 - pageLayout.getPageWidth(pageNb) / 2;
 	        return imageX;
     	}
     }
 
     /**
-     * Calculate the optimal width and height of a page
+     * Calculate the optimal width and height of each page
      * considering the area width and height
      */
     private void calculateOptimalWidthAndHeight() {
@@ -722,18 +1088,18 @@ public class PDFView extends SurfaceView {
             return;
         }
 
-        float maxWidth = getWidth(), maxHeight = getHeight();
-        float w = pageWidth, h = pageHeight;
-        float ratio = w / h;
-        w = maxWidth;
-        h = (float) Math.floor(maxWidth / ratio);
-        if (h > maxHeight) {
-            h = maxHeight;
-            w = (float) Math.floor(maxHeight * ratio);
+        pageLayout = new PageLayout(pageWidths, pageHeights, getWidth(), getHeight(), swipeVertical);
+        calculateCurrentPageBounds();
+    }
+
+    /** Update everything depending on the size of the current page */
+    private void calculateCurrentPageBounds() {
+        if (pageLayout == null) {
+            return;
         }
 
-        optimalPageWidth = w;
-        optimalPageHeight = h;
+        optimalPageWidth = pageLayout.getPageWidth(currentFilteredPage);
+        optimalPageHeight = pageLayout.getPageHeight(currentFilteredPage);
 
         calculateMasksBounds();
         calculateMinimapBounds();
@@ -766,12 +1132,13 @@ public class PDFView extends SurfaceView {
             miniMapRequired = false;
         } else {
             // Calculates the bounds of the current displayed area
-            float x = (-currentXOffset - toCurrentScale(currentFilteredPage * optimalPageWidth)) //
+            float x = (-currentXOffset - toCurrentScale(pageLayout.getPageX(currentFilteredPage))) //
                     / toCurrentScale(optimalPageWidth) * minimapBounds.width();
             float width = getWidth() / toCurrentScale(optimalPageWidth) * minimapBounds.width();
-            float y = -currentYOffset / toCurrentScale(optimalPageHeight) * minimapBounds.height();
+            float y = (-currentYOffset - toCurrentScale(pageLayout.getPageY(currentFilteredPage))) //
+                    / toCurrentScale(optimalPageHeight) * minimapBounds.height();
             float height = getHeight() / toCurrentScale(optimalPageHeight) * minimapBounds.height();
-            minimapScreenBounds = new RectF(minimapBounds.left + x, minimapBounds.top + y, //
+            minimapScreenBounds.set(minimapBounds.left + x, minimapBounds.top + y, //
                     minimapBounds.left + x + width, minimapBounds.top + y + height);
             minimapScreenBounds.intersect(minimapBounds);
             miniMapRequired = true;
@@ -791,15 +1158,27 @@ public class PDFView extends SurfaceView {
      * @param offsetY The big strip Y offset to use as the right border of the screen.
      */
     public void moveTo(float offsetX, float offsetY) {
-    	if (swipeVertical) {
+        if (pageLayout == null) {
+            return;
+        }
+        float pageX = pageLayout.getPageX(currentFilteredPage);
+        float pageY = pageLayout.getPageY(currentFilteredPage);
+
+        if (continuousScroll) {
+            // The whole strip can be scrolled, not only the current page
+            float stripLength = toCurrentScale(pageLayout.getLength());
+            float stripCrossSize = toCurrentScale(pageLayout.getCrossSize());
+            offsetX = limitOffset(offsetX, swipeVertical ? stripCrossSize : stripLength, getWidth());
+            offsetY = limitOffset(offsetY, swipeVertical ? stripLength : stripCrossSize, getHeight());
+        } else if (swipeVertical) {
     		// Check X offset
 	        if (toCurrentScale(optimalPageWidth) < getWidth()) {
-	            offsetX = getWidth() / 2 - toCurrentScale(optimalPageWidth) / 2;
+	            offsetX = getWidth() / 2 - toCurrentScale(pageX + optimalPageWidth / 2);
 	        } else {
-	            if (offsetX > 0) {
-	                offsetX = 0;
-	            } else if (offsetX + toCurrentScale(optimalPageWidth) < getWidth()) {
-	                offsetX = getWidth() - toCurrentScale(optimalPageWidth);
+	            if (offsetX + toCurrentScale(pageX) > 0) {
+	                offsetX = -toCurrentScale(pageX);
+	            } else if (offsetX + toCurrentScale(pageX + optimalPageWidth) < getWidth()) {
+	                offsetX = getWidth() - toCurrentScale(pageX + optimalPageWidth);
 	            }
 	        }
 	
@@ -807,13 +1186,13 @@ public class PDFView extends SurfaceView {
 	        if (isZooming()) {
 	            if (toCurrentScale(optimalPageHeight) < getHeight()) {
 	                miniMapRequired = false;
-	                offsetY = getHeight() / 2 - toCurrentScale((currentFilteredPage + 0.5f) * optimalPageHeight);
+	                offsetY = getHeight() / 2 - toCurrentScale(pageY + optimalPageHeight / 2);
 	            } else {
 	                miniMapRequired = true;
-	                if (offsetY + toCurrentScale(currentFilteredPage * optimalPageHeight) > 0) {
-	                    offsetY = -toCurrentScale(currentFilteredPage * optimalPageHeight);
-	                } else if (offsetY + toCurrentScale((currentFilteredPage + 1) * optimalPageHeight) < getHeight()) {
-	                    offsetY = getHeight() - toCurrentScale((currentFilteredPage + 1) * optimalPageHeight);
+	                if (offsetY + toCurrentScale(pageY) > 0) {
+	                    offsetY = -toCurrentScale(pageY);
+	                } else if (offsetY + toCurrentScale(pageY + optimalPageHeight) < getHeight()) {
+	                    offsetY = getHeight() - toCurrentScale(pageY + optimalPageHeight);
 	                }
 	            }
 	
@@ -830,12 +1209,12 @@ public class PDFView extends SurfaceView {
     	} else {
 	        // Check Y offset
 	        if (toCurrentScale(optimalPageHeight) < getHeight()) {
-	            offsetY = getHeight() / 2 - toCurrentScale(optimalPageHeight) / 2;
+	            offsetY = getHeight() / 2 - toCurrentScale(pageY + optimalPageHeight / 2);
 	        } else {
-	            if (offsetY > 0) {
-	                offsetY = 0;
-	            } else if (offsetY + toCurrentScale(optimalPageHeight) < getHeight()) {
-	                offsetY = getHeight() - toCurrentScale(optimalPageHeight);
+	            if (offsetY + toCurrentScale(pageY) > 0) {
+	                offsetY = -toCurrentScale(pageY);
+	            } else if (offsetY + toCurrentScale(pageY + optimalPageHeight) < getHeight()) {
+	                offsetY = getHeight() - toCurrentScale(pageY + optimalPageHeight);
 	            }
 	        }
 	
@@ -843,13 +1222,13 @@ public class PDFView extends SurfaceView {
 	        if (isZooming()) {
 	            if (toCurrentScale(optimalPageWidth) < getWidth()) {
 	                miniMapRequired = false;
-	                offsetX = getWidth() / 2 - toCurrentScale((currentFilteredPage + 0.5f) * optimalPageWidth);
+	                offsetX = getWidth() / 2 - toCurrentScale(pageX + optimalPageWidth / 2);
 	            } else {
 	                miniMapRequired = true;
-	                if (offsetX + toCurrentScale(currentFilteredPage * optimalPageWidth) > 0) {
-	                    offsetX = -toCurrentScale(currentFilteredPage * optimalPageWidth);
-	                } else if (offsetX + toCurrentScale((currentFilteredPage + 1) * optimalPageWidth) < getWidth()) {
-	                    offsetX = getWidth() - toCurrentScale((currentFilteredPage + 1) * optimalPageWidth);
+	                if (offsetX + toCurrentScale(pageX) > 0) {
+	                    offsetX = -toCurrentScale(pageX);
+	                } else if (offsetX + toCurrentScale(pageX + optimalPageWidth) < getWidth()) {
+	                    offsetX = getWidth() - toCurrentScale(pageX + optimalPageWidth);
 	                }
 	            }
 	
@@ -865,12 +1244,83 @@ public class PDFView extends SurfaceView {
 	        }
     	}
 
+        long time = SystemClock.uptimeMillis();
+        if (time > lastMoveTime) {
+            velocityX = (offsetX - currentXOffset) / (time - lastMoveTime);
+            velocityY = (offsetY - currentYOffset) / (time - lastMoveTime);
+            lastMoveTime = time;
+        }
+
+        float previousOffset = swipeVertical ? currentYOffset : currentXOffset;
         currentXOffset = offsetX;
         currentYOffset = offsetY;
+        if (continuousScroll) {
+            onContinuousScroll(previousOffset);
+        }
         calculateMinimapAreaBounds();
         invalidate();
     }
 
+    /**
+     * @return The given offset, limited so that a strip of the given size
+     * covers the view, or centered if the strip is smaller than the view.
+     */
+    private float limitOffset(float offset, float stripSize, float viewSize) {
+        if (stripSize < viewSize) {
+            return (viewSize - stripSize) / 2;
+        }
+        return Math.max(viewSize - stripSize, Math.min(offset, 0));
+    }
+
+    /**
+     * In continuous scroll mode, the current page is the one in the middle
+     * of the screen. Load the pages appearing on the screen as soon as they
+     * appear, instead of waiting for the end of the move.
+     */
+    private void onContinuousScroll(float previousOffset) {
+        float offset = swipeVertical ? currentYOffset : currentXOffset;
+        if (offset != previousOffset) {
+            scrollDirection = offset < previousOffset ? 1 : -1;
+        }
+
+        float middle = swipeVertical ? getHeight() / 2 - currentYOffset : getWidth() / 2 - currentXOffset;
+        int filteredPage = pageLayout.getPageAtOffset(toRealScale(middle));
+        if (filteredPage != currentFilteredPage) {
+            currentFilteredPage = filteredPage;
+            currentPage = filteredPage;
+            if (filteredUserPageIndexes != null) {
+                for (int i = 0; i < filteredUserPageIndexes.length; i++) {
+                    if (filteredUserPageIndexes[i] == filteredPage) {
+                        currentPage = i;
+                        break;
+                    }
+                }
+            }
+            calculateCurrentPageBounds();
+            if (onPageChangeListener != null) {
+                onPageChangeListener.onPageChanged(currentPage + 1, getPageCount());
+            }
+        }
+
+        if (state == State.SHOWN && (getFirstVisiblePage() < loadedFirstPage || getLastVisiblePage() > loadedLastPage)) {
+            loadPages();
+        }
+    }
+
+    /**
+     * Keep moving by the given distance, slowing down.
+     * @param dx The X distance to move by.
+     * @param dy The Y distance to move by.
+     */
+    void startFling(float dx, float dy) {
+        animationManager.startFlingAnimation(currentXOffset, currentYOffset, //
+                currentXOffset + dx, currentYOffset + dy);
+    }
+
+    void stopAnimation() {
+        animationManager.stopAll();
+    }
+
     /**
      * Move relatively to the current position.
      * @param dx The X difference you want to apply.
@@ -902,6 +1352,9 @@ public class PDFView extends SurfaceView {
         baseX += (pivot.x - pivot.x * dzoom);
         baseY += (pivot.y - pivot.y * dzoom);
         moveTo(baseX, baseY);
+
+        // Zooming isn't a motion to anticipate
+        velocityX = velocityY = 0;
     }
 
     /** @see #zoomCenteredTo(float, PointF) */
@@ -953,6 +1406,77 @@ public class PDFView extends SurfaceView {
         this.defaultPage = defaultPage;
     }
 
+    private void setRenderingThreads(int renderingThreads) {
+        this.renderingThreads = renderingThreads;
+    }
+
+    private void setContinuousScroll(boolean continuousScroll) {
+        this.continuousScroll = continuousScroll;
+    }
+
+    public boolean isContinuousScroll() {
+        return continuousScroll;
+    }
+
+    private void setCacheSize(int cacheSize) {
+        cacheManager.setMaxSize(cacheSize);
+    }
+
+    private void setDiskCacheSize(long diskCacheSize) {
+        this.diskCacheSize = diskCacheSize;
+    }
+
+    private void setFitzMemory(int fitzMemory) {
+        this.fitzMemory = fitzMemory;
+    }
+
+    private void setThumbnailStripEnabled(boolean thumbnailStripEnabled) {
+        this.thumbnailStripEnabled = thumbnailStripEnabled;
+    }
+
+    /**
+     * Get the thumbnail of a page, when the thumbnails of all the
+     * pages are rendered in the background.
+     * @param page Page number starting from 1.
+     * @return A new bitmap, or null if the thumbnail isn't rendered yet.
+     * @see Configurator#thumbnailStrip(boolean)
+     */
+    public Bitmap getPageThumbnail(int page) {
+        if (thumbnailStrip == null) {
+            return null;
+        }
+        int userPage = determineValidPageNumberFrom(page - 1);
+        if (filteredUserPageIndexes != null) {
+            userPage = filteredUserPageIndexes[userPage];
+        }
+        return thumbnailStrip.getThumbnail(userPage);
+    }
+
+    /** @return The number of bytes currently used by the rendered bitmaps */
+    public int getCacheSize() {
+        return cacheManager.getSize();
+    }
+
+    /** @return The maximum number of bytes used at the same time by the rendered bitmaps */
+    public int getCachePeakSize() {
+        return cacheManager.getPeakSize();
+    }
+
+    /** @return The number of bytes of the native stores of all the handles on the document */
+    public int getFitzMemory() {
+        return fitzMemory;
+    }
+
+    /**
+     * Each handle on the document has its own native store: the one of the view,
+     * the one of each rendering worker, and the one of the thumbnail strip.
+     * @return The number of bytes of the native store of each handle.
+     */
+    private int getHandleFitzMemory() {
+        int nbHandles = 1 + renderingThreads + (thumbnailStripEnabled ? 1 : 0);
+        return Math.max(Constants.Cache.MIN_FITZ_MEMORY, fitzMemory / nbHandles);
+    }
+
     public void resetZoom() {
         zoomTo(1);
     }
@@ -961,27 +1485,65 @@ public class PDFView extends SurfaceView {
         animationManager.startZoomAnimation(zoom, 1f);
     }
 
-    /** Use an asset file as the pdf source */
+    /**
+     * Use an asset file as the pdf source. The asset is copied in the cache
+     * directory in the background when loading, unless it's already there.
+     */
     public Configurator fromAsset(String assetName) {
         try {
-            File pdfFile = FileUtils.fileFromAsset(getContext(), assetName);
-            return fromFile(pdfFile);
+            // Only make sure it exists, opening an asset doesn't read it
+            getContext().getAssets().open(assetName).close();
         } catch (IOException e) {
             throw new FileNotFoundException(assetName + " does not exist.", e);
         }
+        return new Configurator(new DocumentSource.AssetSource(getContext(), assetName));
     }
 
     /** Use a file as the pdf source */
     public Configurator fromFile(File file) {
         if (!file.exists()) throw new FileNotFoundException(file.getAbsolutePath() + "does not exist.");
-        return new Configurator(Uri.fromFile(file));
+        return new Configurator(new DocumentSource.UriSource(Uri.fromFile(file)));
+    }
+
+    /**
+     * Use a file or a content uri as the pdf source. A content
+     * uri is opened through its file descriptor, not its path.
+     */
+    public Configurator fromUri(Uri uri) {
+        return new Configurator(new DocumentSource.UriSource(uri));
+    }
+
+    /**
+     * Use a pdf in memory as the source. It's written in a temporary
+     * file in the background, deleted when the view is recycled.
+     */
+    public Configurator fromBytes(byte[] bytes) {
+        return new Configurator(new DocumentSource.BytesSource(getContext(), bytes));
+    }
+
+    /**
+     * Use the remaining bytes of a buffer as the pdf source, they're written
+     * in a temporary file in the background, deleted when the view is recycled.
+     * The buffer must not be modified until the document is loaded.
+     */
+    public Configurator fromByteBuffer(ByteBuffer buffer) {
+        return new Configurator(new DocumentSource.ByteBufferSource(getContext(), buffer));
+    }
+
+    /**
+     * Use a stream as the pdf source. It's read and written in a temporary file in
+     * the background, closed once read, and the file is deleted when the view is recycled.
+     * The stream can only be loaded once.
+     */
+    public Configurator fromStream(InputStream inputStream) {
+        return new Configurator(new DocumentSource.StreamSource(getContext(), inputStream));
     }
 
     private enum State {DEFAULT, LOADED, SHOWN}
 
     public class Configurator {
 
-        private final Uri uri;
+        private final DocumentSource documentSource;
 
         private int[] pageNumbers = null;
 
@@ -993,20 +1555,36 @@ public class PDFView extends SurfaceView {
 
         private OnLoadCompleteListener onLoadCompleteListener;
 
+        private OnLoadProgressListener onLoadProgressListener;
+
         private OnPageChangeListener onPageChangeListener;
 
+        private OnErrorListener onErrorListener;
+
         private int defaultPage = 1;
 
         private boolean showMinimap = false;
         
         private boolean swipeVertical = false;
 
+        private boolean continuousScroll = false;
+
         private int maskColor = Color.BLACK;
 
         private int maskAlpha = Constants.MASK_ALPHA;
 
-        private Configurator(Uri uri) {
-            this.uri = uri;
+        private int renderingThreads = RenderingManager.defaultThreadCount();
+
+        private int cacheSize = MemoryUtils.defaultCacheSize(getContext());
+
+        private long diskCacheSize = 0;
+
+        private int fitzMemory = MemoryUtils.defaultFitzMemory(getContext());
+
+        private boolean thumbnailStrip = false;
+
+        private Configurator(DocumentSource documentSource) {
+            this.documentSource = documentSource;
         }
 
         public Configurator pages(int... pageNumbers) {
@@ -1034,11 +1612,27 @@ public class PDFView extends SurfaceView {
             return this;
         }
 
+        public Configurator onLoadProgress(OnLoadProgressListener onLoadProgressListener) {
+            this.onLoadProgressListener = onLoadProgressListener;
+            return this;
+        }
+
         public Configurator onPageChange(OnPageChangeListener onPageChangeListener) {
             this.onPageChangeListener = onPageChangeListener;
             return this;
         }
 
+        /**
+         * @param onErrorListener - called when the document can't be opened, for instance
+         *                        when its stream fails or when it can't be copied
+         *                        (default none, the error is only logged)
+         * @return
+         */
+        public Configurator onError(OnErrorListener onErrorListener) {
+            this.onErrorListener = onErrorListener;
+            return this;
+        }
+
         public Configurator defaultPage(int defaultPage) {
             this.defaultPage = defaultPage;
             return this;
@@ -1049,6 +1643,16 @@ public class PDFView extends SurfaceView {
             return this;
         }
 
+        /**
+         * @param continuousScroll - scroll freely through all the pages instead
+         *                         of showing them one by one (default false)
+         * @return
+         */
+        public Configurator continuousScroll(boolean continuousScroll) {
+            this.continuousScroll = continuousScroll;
+            return this;
+        }
+
         /**
          * @param maskColor - mask color (default Color.BLACK)
          * @param maskAlpha - alpha value in [0,255] (default 20)
@@ -1060,23 +1664,89 @@ public class PDFView extends SurfaceView {
             return this;
         }
 
+        /**
+         * @param renderingThreads - number of threads rendering the pages in parallel,
+         *                         each one with its own handle on the document
+         *                         (default depends on the number of cores)
+         * @return
+         */
+        public Configurator renderingThreads(int renderingThreads) {
+            this.renderingThreads = renderingThreads;
+            return this;
+        }
+
+        /**
+         * @param cacheSize - number of bytes the rendered bitmaps can use
+         *                  (default depends on the memory class of the device)
+         * @return
+         */
+        public Configurator cacheSize(int cacheSize) {
+            this.cacheSize = cacheSize;
+            return this;
+        }
+
+        /**
+         * @param fitzMemory - number of bytes of the native stores of the document, where its
+         *                   fonts and images are kept once decoded. Documents with heavy
+         *                   vector drawings render faster with a bigger store. It's shared
+         *                   between the handles on the document, each rendering thread
+         *                   having its own, with at least 512KB per handle
+         *                   (default depends on the memory class of the device)
+         * @return
+         */
+        public Configurator fitzMemory(int fitzMemory) {
+            this.fitzMemory = fitzMemory;
+            return this;
+        }
+
+        /**
+         * @param diskCacheSize - number of bytes the rendered bitmaps can use on the disk,
+         *                      to be shown right away when the same document is opened
+         *                      again (default 0, disabled)
+         * @return
+         */
+        public Configurator diskCacheSize(long diskCacheSize) {
+            this.diskCacheSize = diskCacheSize;
+            return this;
+        }
+
+        /**
+         * @param thumbnailStrip - render a small thumbnail of every page in the background,
+         *                       shown when nothing better is available, and given by
+         *                       {@link PDFView#getPageThumbnail(int)} (default false)
+         * @return
+         */
+        public Configurator thumbnailStrip(boolean thumbnailStrip) {
+            this.thumbnailStrip = thumbnailStrip;
+            return this;
+        }
+
         public void load() {
             PDFView.this.recycle();
             PDFView.this.setOnDrawListener(onDrawListener);
             PDFView.this.setOnPageChangeListener(onPageChangeListener);
+            PDFView.this.setOnLoadProgressListener(onLoadProgressListener);
+            PDFView.this.setOnErrorListener(onErrorListener);
             PDFView.this.enableSwipe(enableSwipe);
             PDFView.this.enableDoubletap(enableDoubletap);
             PDFView.this.setDefaultPage(defaultPage);
+            PDFView.this.setRenderingThreads(renderingThreads);
+            PDFView.this.setCacheSize(cacheSize);
+            PDFView.this.setDiskCacheSize(diskCacheSize);
+            PDFView.this.setFitzMemory(fitzMemory);
+            PDFView.this.setThumbnailStripEnabled(thumbnailStrip);
             PDFView.this.setUserWantsMinimap(showMinimap);
             PDFView.this.setSwipeVertical(swipeVertical);
             PDFView.this.dragPinchManager.setSwipeVertical(swipeVertical);
+            PDFView.this.setContinuousScroll(continuousScroll);
+            PDFView.this.dragPinchManager.setContinuousScroll(continuousScroll);
             PDFView.this.maskPaint = new Paint();
             PDFView.this.maskPaint.setColor(maskColor);
             PDFView.this.maskPaint.setAlpha(maskAlpha);
             if (pageNumbers != null) {
-                PDFView.this.load(uri, onLoadCompleteListener, pageNumbers);
+                PDFView.this.load(documentSource, onLoadCompleteListener, pageNumbers);
             } else {
-                PDFView.this.load(uri, onLoadCompleteListener);
+                PDFView.this.load(documentSource, onLoadCompleteListener);
             }
         }
 
@@ -0,0 +1,144 @@
+/**
+ * Copyright 2014 Joan Zapata
+ *
+ * This file is part of Android-pdfview.
+ *
+ * Android-pdfview is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Android-pdfview is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Android-pdfview.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.joanzapata.pdfview;
+
+/**
+ * Position of every page on the big strip, at zoom level 1.
+ * <p/>
+ * Each page is scaled to fit the component size, so pages with different sizes
+ * in the document have different optimal sizes. They're put side by side along
+ * the swipe axis, and centered on the other axis. The offsets of the pages along
+ * the swipe axis are prefix sums of their optimal sizes, which allows finding the
+ * page at a given offset with a binary search.
+ */
+class PageLayout {
+
+    private final boolean vertical;
+
+    /** Optimal width and height of each page */
+    private final float[] widths, heights;
+
+    /** Offset of each page along the swipe axis, with the total length at the end */
+    private final float[] offsets;
+
+    /** Size of the biggest page across the swipe axis */
+    private final float maxCrossSize;
+
+    /**
+     * @param pageWidths  The width of each page in the document.
+     * @param pageHeights The height of each page in the document.
+     * @param maxWidth    The width the pages must fit in.
+     * @param maxHeight   The height the pages must fit in.
+     * @param vertical    True if the pages are put one under the other.
+     */
+    public PageLayout(int[] pageWidths, int[] pageHeights, float maxWidth, float maxHeight, boolean vertical) {
+        int nbPages = pageWidths.length;
+        this.vertical = vertical;
+        this.widths = new float[nbPages];
+        this.heights = new float[nbPages];
+        this.offsets = new float[nbPages + 1];
+
+        float maxCrossSize = 0;
+        for (int i = 0; i < nbPages; i++) {
+            float ratio = (float) pageWidths[i] / (float) pageHeights[i];
+            float w = maxWidth;
+            float h = (float) Math.floor(maxWidth / ratio);
+            if (h > maxHeight) {
+                h = maxHeight;
+                w = (float) Math.floor(maxHeight * ratio);
+            }
+            widths[i] = w;
+            heights[i] = h;
+            offsets[i + 1] = offsets[i] + (vertical ? h : w);
+            maxCrossSize = Math.max(maxCrossSize, vertical ? w : h);
+        }
+        this.maxCrossSize = maxCrossSize;
+    }
+
+    public int getPageCount() {
+        return widths.length;
+    }
+
+    /** @return The optimal width of the given page, or of the nearest existing page */
+    public float getPageWidth(int page) {
+        return widths[limit(page)];
+    }
+
+    /** @return The optimal height of the given page, or of the nearest existing page */
+    public float getPageHeight(int page) {
+        return heights[limit(page)];
+    }
+
+    /**
+     * @return The X position of the left border of the given page on the strip.
+     * Pages outside the document are considered to be as large as the nearest page.
+     */
+    public float getPageX(int page) {
+        return vertical ? (maxCrossSize - getPageWidth(page)) / 2 : getPageOffset(page);
+    }
+
+    /**
+     * @return The Y position of the top border of the given page on the strip.
+     * Pages outside the document are considered to be as large as the nearest page.
+     */
+    public float getPageY(int page) {
+        return vertical ? getPageOffset(page) : (maxCrossSize - getPageHeight(page)) / 2;
+    }
+
+    /** @return The size of the whole strip across the swipe axis */
+    public float getCrossSize() {
+        return maxCrossSize;
+    }
+
+    /** @return The length of the whole strip along the swipe axis */
+    public float getLength() {
+        return offsets[offsets.length - 1];
+    }
+
+    /**
+     * @param offset An offset along the swipe axis, at zoom level 1.
+     * @return The page at this offset, the first or last page if outside the strip.
+     */
+    public int getPageAtOffset(float offset) {
+        int low = 0, high = widths.length - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (offsets[middle] <= offset) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    private float getPageOffset(int page) {
+        int nbPages = widths.length;
+        if (page < 0) {
+            return page * (vertical ? heights[0] : widths[0]);
+        } else if (page > nbPages) {
+            return getLength() + (page - nbPages) * (vertical ? heights[nbPages - 1] : widths[nbPages - 1]);
+        }
+        return offsets[page];
+    }
+
+    private int limit(int page) {
+        return Math.max(0, Math.min(page, widths.length - 1));
+    }
+}
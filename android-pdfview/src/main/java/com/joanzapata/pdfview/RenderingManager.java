@@ -0,0 +1,449 @@
+/**
+ * Copyright 2014 Joan Zapata
+ *
+ * This file is part of Android-pdfview.
+ *
+ * Android-pdfview is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Android-pdfview is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Android-pdfview.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.joanzapata.pdfview;
+
+import android.graphics.Bitmap;
+import android.graphics.RectF;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import com.joanzapata.pdfview.model.PagePart;
+import com.joanzapata.pdfview.util.Constants;
+
+import org.vudroid.core.DecodeService;
+import org.vudroid.core.codec.CodecPage;
+
+import java.util.LinkedList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Renders the page parts requested by the {@link PDFView} on a pool of worker threads.
+ * <p/>
+ * Each worker opens its own native handle on the document, so parts can be rendered
+ * in parallel without any global lock. Whatever the order in which the workers finish,
+ * the rendered parts are delivered to {@link PDFView#onBitmapRendered(PagePart)} on the
+ * UI thread in the order they were requested.
+ * <p/>
+ * Tasks are requested and delivered on the UI thread, and go to the workers through a
+ * lock-free queue, so the UI thread never waits for a worker. Each task is stamped with
+ * the generation it was requested in, {@link #removeAllTasks()} starts a new generation
+ * which makes all the previous tasks obsolete at once. Their parts are still delivered
+ * if rendered, unless the layout of the pages changed since they were requested.
+ * <p/>
+ * A part requested again while a worker is rendering it isn't rendered twice: the
+ * task being rendered is brought to the current generation and delivered as usual.
+ * <p/>
+ * Prefetched parts, which are not on the screen yet, wait in their own queue which the
+ * workers only look at when there's nothing else to render. They're delivered as soon
+ * as they're rendered, without holding back the parts on the screen.
+ */
+class RenderingManager {
+
+    private static final String TAG = RenderingManager.class.getSimpleName();
+
+    private final PDFView pdfView;
+
+    private final Handler handler;
+
+    private final BitmapPool bitmapPool;
+
+    /** Where the parts are looked for before being rendered, may be null */
+    private final DiskTileCache diskTileCache;
+
+    private final RenderingWorker[] workers;
+
+    /** Tasks waiting for a worker, in the order they were requested */
+    private final ConcurrentLinkedQueue<RenderingTask> pendingTasks;
+
+    /** Prefetch tasks waiting for a worker with nothing else to do */
+    private final ConcurrentLinkedQueue<RenderingTask> prefetchTasks;
+
+    /** One permit for each task added to the pending or prefetch tasks */
+    private final Semaphore availableTasks;
+
+    /** The current generation, tasks of the previous ones are obsolete */
+    private final AtomicInteger generation;
+
+    /**
+     * Tasks taken by a worker and not handled by the UI thread yet, by part key.
+     * Added by the workers, removed on the UI thread.
+     */
+    private final ConcurrentHashMap<Long, RenderingTask> inFlightTasks;
+
+    /** Tasks of the current generation not delivered yet, only used on the UI thread */
+    private final LinkedList<RenderingTask> orderedTasks;
+
+    /** The current layout of the pages, parts of the previous ones have the wrong size */
+    private int layout;
+
+    private DecodeService decodeService;
+
+    private volatile boolean stopped;
+
+    public RenderingManager(PDFView pdfView, BitmapPool bitmapPool, DiskTileCache diskTileCache, int nbThreads) {
+        this.pdfView = pdfView;
+        this.bitmapPool = bitmapPool;
+        this.diskTileCache = diskTileCache;
+        this.handler = new Handler(Looper.getMainLooper());
+        this.pendingTasks = new ConcurrentLinkedQueue<RenderingTask>();
+        this.prefetchTasks = new ConcurrentLinkedQueue<RenderingTask>();
+        this.availableTasks = new Semaphore(0);
+        this.generation = new AtomicInteger();
+        this.inFlightTasks = new ConcurrentHashMap<Long, RenderingTask>();
+        this.orderedTasks = new LinkedList<RenderingTask>();
+        this.workers = new RenderingWorker[Math.max(1, nbThreads)];
+    }
+
+    /** @return The default number of workers, depending on the number of cores */
+    public static int defaultThreadCount() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        return Math.max(1, Math.min(cores, Constants.MAX_RENDERING_THREADS));
+    }
+
+    /**
+     * Start the workers on the given document.
+     * @param decodeService The decode service each worker will duplicate.
+     */
+    public void start(DecodeService decodeService) {
+        if (stopped || this.decodeService != null) {
+            return;
+        }
+        this.decodeService = decodeService;
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new RenderingWorker(i);
+            workers[i].start();
+        }
+    }
+
+    /**
+     * @param prefetch True if the part is not on the screen yet, it will then only
+     *                 be rendered when there's no other part to render.
+     */
+    public void addRenderingTask(int userPage, int page, float width, float height, RectF bounds, boolean thumbnail, int cacheOrder, long key, boolean prefetch) {
+        if (stopped) {
+            return;
+        }
+
+        // The same part is being rendered for a previous generation, adopt it
+        RenderingTask inFlightTask = inFlightTasks.get(key);
+        if (inFlightTask != null && inFlightTask.generation != generation.get() && inFlightTask.layout == layout) {
+            inFlightTask.generation = generation.get();
+            inFlightTask.cacheOrder = cacheOrder;
+            inFlightTask.prefetch = prefetch;
+            if (!prefetch) {
+                orderedTasks.add(inFlightTask);
+            }
+            return;
+        }
+
+        RenderingTask task = new RenderingTask(width, height, bounds, userPage, page, thumbnail, cacheOrder, key);
+        task.generation = generation.get();
+        task.layout = layout;
+        task.prefetch = prefetch;
+        if (!prefetch) {
+            orderedTasks.add(task);
+        }
+        queue(task);
+    }
+
+    /**
+     * @return True while some parts on the screen wait for a worker, callable from any
+     * thread. The prefetched parts aren't considered, they can always wait.
+     */
+    public boolean hasPendingTasks() {
+        return !pendingTasks.isEmpty();
+    }
+
+    /** Give a task of the current generation to the workers */
+    private void queue(RenderingTask task) {
+        if (task.prefetch) {
+            prefetchTasks.add(task);
+        } else {
+            pendingTasks.add(task);
+        }
+        availableTasks.release();
+    }
+
+    /**
+     * Forget all the tasks not rendered yet. Tasks being rendered are
+     * cancelled, their worker gives up at the next step of the rendering.
+     */
+    public void removeAllTasks() {
+        generation.incrementAndGet();
+        pendingTasks.clear();
+        prefetchTasks.clear();
+
+        // Parts already rendered were still valid when they
+        // finished, deliver them instead of wasting them.
+        for (RenderingTask task : orderedTasks) {
+            if (task.result != null) {
+                deliverIfLaidOut(task, task.result);
+            }
+        }
+        orderedTasks.clear();
+    }
+
+    /**
+     * Forget all the tasks like {@link #removeAllTasks()}, and drop the parts of all
+     * the tasks requested so far, rendered or being rendered: the size of some pages
+     * changed, their parts would be drawn stretched.
+     */
+    public void layoutChanged() {
+        layout++;
+        removeAllTasks();
+    }
+
+    /** Deliver the part of a task, unless it was laid out for a previous layout */
+    private void deliverIfLaidOut(RenderingTask task, PagePart part) {
+        if (task.layout == layout) {
+            pdfView.onBitmapRendered(part);
+        } else {
+            bitmapPool.release(part.getRenderedBitmap());
+        }
+    }
+
+    /** Stop all the workers, they'll release their document handle on their own */
+    public void stop() {
+        stopped = true;
+        pendingTasks.clear();
+        prefetchTasks.clear();
+        availableTasks.release(workers.length);
+        for (RenderingTask task : orderedTasks) {
+            if (task.result != null) {
+                bitmapPool.release(task.result.getRenderedBitmap());
+            }
+        }
+        orderedTasks.clear();
+    }
+
+    /** Called on the UI thread when a worker is done with a task */
+    private void onTaskRendered(RenderingTask task, PagePart part) {
+        inFlightTasks.remove(task.key, task);
+        if (stopped) {
+            if (part != null) {
+                bitmapPool.release(part.getRenderedBitmap());
+            }
+            return;
+        }
+
+        // The part of an obsolete task finished before being cancelled, it's still valid
+        if (task.generation != generation.get()) {
+            if (part != null) {
+                deliverIfLaidOut(task, part);
+            }
+            return;
+        }
+
+        if (part == null && !task.failed) {
+            // The task was cancelled, then adopted before its worker gave up
+            queue(task);
+            return;
+        } else if (task.prefetch) {
+            if (part != null) {
+                pdfView.onBitmapRendered(part);
+            }
+            return;
+        } else if (part == null) {
+            orderedTasks.remove(task);
+        } else {
+            task.result = part;
+        }
+
+        // Deliver all the consecutive rendered parts from the head
+        while (!orderedTasks.isEmpty() && orderedTasks.getFirst().result != null) {
+            pdfView.onBitmapRendered(orderedTasks.removeFirst().result);
+        }
+    }
+
+    /** Post the result of a task to the UI thread */
+    private void post(final RenderingTask task, final PagePart part) {
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                onTaskRendered(task, part);
+            }
+        });
+    }
+
+    /** @return The next task to proceed, or null if the manager has been stopped */
+    private RenderingTask waitForRenderingTask() {
+        while (!stopped) {
+            try {
+                availableTasks.acquire();
+            } catch (InterruptedException e) {
+                return null;
+            }
+
+            // The queues may have been cleared since the permit was given
+            RenderingTask task = pendingTasks.poll();
+            if (task == null) {
+                task = prefetchTasks.poll();
+            }
+            if (task != null && !task.isCanceled()) {
+                inFlightTasks.put(task.key, task);
+                return task;
+            }
+        }
+        return null;
+    }
+
+    private class RenderingWorker extends Thread {
+
+        /** This worker's own handle on the document */
+        private DecodeService workerDecodeService;
+
+        public RenderingWorker(int index) {
+            super("PDFView-renderer-" + index);
+        }
+
+        @Override
+        public void run() {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            try {
+                try {
+                    workerDecodeService = decodeService.duplicate();
+                } catch (RuntimeException e) {
+                    Log.e(TAG, "Unable to open the document for " + getName(), e);
+                    return;
+                }
+
+                RenderingTask task;
+                while ((task = waitForRenderingTask()) != null) {
+                    PagePart part = null;
+                    try {
+                        part = proceed(task);
+                    } catch (RuntimeException e) {
+                        Log.e(TAG, "Unable to render page " + task.page, e);
+                        task.failed = true;
+                    }
+                    post(task, part);
+                }
+            } finally {
+                if (workerDecodeService != null) {
+                    workerDecodeService.recycle();
+                }
+            }
+        }
+
+        /**
+         * Render the given task, giving up between each step if the task has been cancelled.
+         * The native rendering itself can't be interrupted, so cancelled tasks are at least
+         * spared the opening of their page and the copy of their pixels.
+         * Parts found in the disk cache aren't rendered, the others are written in it.
+         * @return The rendered part, or null if the rendering gave up.
+         */
+        private PagePart proceed(RenderingTask renderingTask) {
+            if (renderingTask.isCanceled()) {
+                return null;
+            }
+
+            Bitmap render = bitmapPool.acquire(Math.round(renderingTask.width), Math.round(renderingTask.height));
+            if (diskTileCache == null || !diskTileCache.get(renderingTask.page, renderingTask.key, render)) {
+                boolean rendered;
+                try {
+                    CodecPage page = workerDecodeService.getPage(renderingTask.page);
+                    try {
+                        if (renderingTask.isCanceled()) {
+                            bitmapPool.release(render);
+                            return null;
+                        }
+                        rendered = page.renderBitmap(render, renderingTask.bounds, renderingTask);
+                    } finally {
+                        workerDecodeService.releasePage(page);
+                    }
+                } catch (RuntimeException e) {
+                    bitmapPool.release(render);
+                    throw e;
+                }
+
+                // Once the rendering gave up, the task may have been adopted since, the
+                // signal isn't canceled anymore but the pixels were never copied: it's
+                // given back without a part, to be rendered again if still needed.
+                if (!rendered || renderingTask.isCanceled()) {
+                    bitmapPool.release(render);
+                    return null;
+                }
+                if (diskTileCache != null) {
+                    diskTileCache.put(renderingTask.page, renderingTask.key, render);
+                }
+            }
+
+            return new PagePart(renderingTask.userPage, renderingTask.page, render, //
+                    renderingTask.width, renderingTask.height, //
+                    renderingTask.bounds, renderingTask.thumbnail, //
+                    renderingTask.cacheOrder, renderingTask.key);
+        }
+    }
+
+    private class RenderingTask implements CodecPage.CancellationSignal {
+        float width, height;
+
+        RectF bounds;
+
+        int page;
+
+        int userPage;
+
+        boolean thumbnail;
+
+        int cacheOrder;
+
+        long key;
+
+        /** The rendered part, waiting for the previous tasks to be delivered */
+        PagePart result;
+
+        /** The generation the task was requested in, or adopted by */
+        volatile int generation;
+
+        /** The layout the task was requested in, only used on the UI thread */
+        int layout;
+
+        /** True if the part is not on the screen yet, only used on the UI thread */
+        boolean prefetch;
+
+        /** True if the rendering failed, as opposed to cancelled */
+        volatile boolean failed;
+
+        public RenderingTask(float width, float height, RectF bounds, int userPage, int page, boolean thumbnail, int cacheOrder, long key) {
+            super();
+            this.page = page;
+            this.width = width;
+            this.height = height;
+            this.bounds = bounds;
+            this.userPage = userPage;
+            this.thumbnail = thumbnail;
+            this.cacheOrder = cacheOrder;
+            this.key = key;
+        }
+
+        /** @return True if the task has been removed or the manager stopped, callable from any thread */
+        @Override
+        public boolean isCanceled() {
+            return stopped || generation != RenderingManager.this.generation.get();
+        }
+
+    }
+
+}
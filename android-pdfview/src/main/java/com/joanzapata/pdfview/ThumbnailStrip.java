@@ -0,0 +1,251 @@
+/**
+ * Copyright 2014 Joan Zapata
+ *
+ * This file is part of Android-pdfview.
+ *
+ * Android-pdfview is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Android-pdfview is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Android-pdfview.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.joanzapata.pdfview;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.os.Process;
+import android.util.Log;
+
+import com.joanzapata.pdfview.util.Constants;
+
+import org.vudroid.core.DecodeService;
+import org.vudroid.core.codec.CodecPage;
+
+/**
+ * Renders a small thumbnail of every page of the document in the background,
+ * so there's always something to show for a page, even far from the current one.
+ * <p/>
+ * All the thumbnails are packed in a single RGB_565 bitmap, cut into square cells
+ * as large as the byte budget allows. A worker thread with its own handle on the
+ * document fills the cells one by one, starting from the current page, at the
+ * lowest priority. Each page is rendered apart, and only copied into the atlas
+ * under its lock, which the UI thread holds to draw the cells which are ready.
+ */
+class ThumbnailStrip {
+
+    private static final String TAG = ThumbnailStrip.class.getSimpleName();
+
+    /** Smallest useful size of a cell, no strip is made if the cells would be smaller */
+    private static final int MIN_CELL_SIZE = 16;
+
+    /** The view is refreshed each time this number of thumbnails are ready */
+    private static final int REFRESH_INTERVAL = 8;
+
+    private final PDFView pdfView;
+
+    /** The document page of each user page */
+    private final int[] documentPages;
+
+    /** Where the thumbnail of each user page is, in the atlas */
+    private final Rect[] cells;
+
+    /** Size of the atlas, 0 if the document has too many pages to make a strip */
+    private final int atlasWidth, atlasHeight;
+
+    /** The thumbnails, created by the worker, written and read under the lock */
+    private volatile Bitmap atlas;
+
+    private final Object atlasLock = new Object();
+
+    /** True for each thumbnail ready to be drawn, published by readyCount */
+    private final boolean[] ready;
+
+    private volatile int readyCount;
+
+    private volatile boolean stopped;
+
+    /** True once the worker is done with the atlas */
+    private volatile boolean finished;
+
+    /**
+     * @param pdfView       The view to refresh when thumbnails are ready.
+     * @param pageWidths    The width of each user page.
+     * @param pageHeights   The height of each user page.
+     * @param documentPages The document page of each user page.
+     * @param maxSize       The number of bytes the thumbnails can use.
+     */
+    public ThumbnailStrip(PDFView pdfView, int[] pageWidths, int[] pageHeights, int[] documentPages, int maxSize) {
+        this.pdfView = pdfView;
+        this.documentPages = documentPages;
+        int nbPages = documentPages.length;
+        this.cells = new Rect[nbPages];
+        this.ready = new boolean[nbPages];
+
+        // Square cells as large as allowed, in an atlas small enough to be drawn
+        int maxAtlasSize = Constants.Cache.STRIP_MAX_ATLAS_SIZE;
+        int cellSize = (int) Math.sqrt(maxSize / 2 / Math.max(1, nbPages));
+        cellSize = Math.min(cellSize, Constants.Cache.STRIP_THUMBNAIL_SIZE);
+        cellSize = Math.min(cellSize, maxAtlasSize / (int) Math.ceil(Math.sqrt(nbPages)));
+        if (nbPages == 0 || cellSize < MIN_CELL_SIZE) {
+            atlasWidth = atlasHeight = 0;
+            return;
+        }
+        int nbCols = Math.min(nbPages, maxAtlasSize / cellSize);
+        int nbRows = (nbPages + nbCols - 1) / nbCols;
+        atlasWidth = nbCols * cellSize;
+        atlasHeight = nbRows * cellSize;
+
+        // Each page is fitted in its cell
+        for (int i = 0; i < nbPages; i++) {
+            float ratio = (float) pageWidths[i] / (float) pageHeights[i];
+            int width = ratio >= 1 ? cellSize : Math.max(1, Math.round(cellSize * ratio));
+            int height = ratio >= 1 ? Math.max(1, Math.round(cellSize / ratio)) : cellSize;
+            int left = (i % nbCols) * cellSize;
+            int top = (i / nbCols) * cellSize;
+            cells[i] = new Rect(left, top, left + width, top + height);
+        }
+    }
+
+    /**
+     * Start rendering the thumbnails on a new thread.
+     * @param decodeService The decode service the thread will duplicate.
+     * @param firstPage     The user page to start with, the others follow around it.
+     */
+    public void start(final DecodeService decodeService, final int firstPage) {
+        if (atlasWidth == 0) {
+            return;
+        }
+        new Thread("PDFView-thumbnails") {
+            @Override
+            public void run() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_LOWEST);
+                DecodeService stripDecodeService = null;
+                try {
+                    stripDecodeService = decodeService.duplicate();
+                    atlas = Bitmap.createBitmap(atlasWidth, atlasHeight, Bitmap.Config.RGB_565);
+                    renderAll(stripDecodeService, firstPage);
+                } catch (RuntimeException e) {
+                    Log.e(TAG, "Unable to render the thumbnails", e);
+                } catch (OutOfMemoryError e) {
+                    Log.e(TAG, "Not enough memory for the thumbnails", e);
+                } finally {
+                    if (stripDecodeService != null) {
+                        stripDecodeService.recycle();
+                    }
+                    synchronized (atlasLock) {
+                        finished = true;
+                        if (stopped && atlas != null) {
+                            atlas.recycle();
+                        }
+                    }
+                }
+            }
+        }.start();
+    }
+
+    /** Stop rendering and release the thumbnails, on the UI thread */
+    public void stop() {
+        synchronized (atlasLock) {
+            stopped = true;
+            if (finished && atlas != null) {
+                atlas.recycle();
+            }
+        }
+    }
+
+    /** Render the pages like [...][4][2][0][1][3][...] around the first page */
+    private void renderAll(DecodeService stripDecodeService, int firstPage) {
+        Canvas atlasCanvas = new Canvas(atlas);
+        int nbPages = documentPages.length;
+        CodecPage.CancellationSignal signal = new CodecPage.CancellationSignal() {
+            @Override
+            public boolean isCanceled() {
+                return stopped;
+            }
+        };
+
+        for (int i = 0; i < 2 * nbPages && !stopped; i++) {
+            int userPage = firstPage + (i % 2 == 0 ? i / 2 : -(i + 1) / 2);
+            if (userPage < 0 || userPage >= nbPages) {
+                continue;
+            }
+
+            Rect cell = cells[userPage];
+            Bitmap thumbnail = Bitmap.createBitmap(cell.width(), cell.height(), Bitmap.Config.RGB_565);
+            try {
+                CodecPage page = stripDecodeService.getPage(documentPages[userPage]);
+                boolean rendered;
+                try {
+                    rendered = page.renderBitmap(thumbnail, new RectF(0, 0, 1, 1), signal);
+                } finally {
+                    stripDecodeService.releasePage(page);
+                }
+                if (!rendered) {
+                    if (stopped) {
+                        return;
+                    }
+                    continue;
+                }
+                synchronized (atlasLock) {
+                    if (stopped) {
+                        return;
+                    }
+                    atlasCanvas.drawBitmap(thumbnail, cell.left, cell.top, null);
+                }
+            } catch (RuntimeException e) {
+                // The other pages may still have their thumbnail
+                Log.e(TAG, "Unable to render the thumbnail of page " + documentPages[userPage], e);
+                continue;
+            } finally {
+                thumbnail.recycle();
+            }
+
+            // Writing the volatile count publishes the ready flag
+            ready[userPage] = true;
+            readyCount = readyCount + 1;
+            if (readyCount % REFRESH_INTERVAL == 0 || readyCount == nbPages) {
+                pdfView.postInvalidate();
+            }
+        }
+    }
+
+    /** @return True if the thumbnail of the given user page can be drawn */
+    public boolean isReady(int userPage) {
+        return readyCount > 0 && !stopped && userPage >= 0 && userPage < ready.length && ready[userPage];
+    }
+
+    /**
+     * Draw the thumbnail of the given user page, if ready.
+     * @return True if it has been drawn.
+     */
+    public boolean draw(Canvas canvas, int userPage, RectF dst, Paint paint) {
+        synchronized (atlasLock) {
+            if (!isReady(userPage)) {
+                return false;
+            }
+            canvas.drawBitmap(atlas, cells[userPage], dst, paint);
+            return true;
+        }
+    }
+
+    /** @return A copy of the thumbnail of the given user page, or null if not ready yet */
+    public Bitmap getThumbnail(int userPage) {
+        synchronized (atlasLock) {
+            if (!isReady(userPage)) {
+                return null;
+            }
+            Rect cell = cells[userPage];
+            return Bitmap.createBitmap(atlas, cell.left, cell.top, cell.width(), cell.height());
+        }
+    }
+}
@@ -0,0 +1,35 @@
+/**
+ * Copyright 2014 Joan Zapata
+ *
+ * This file is part of Android-pdfview.
+ *
+ * Android-pdfview is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Android-pdfview is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Android-pdfview.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.joanzapata.pdfview.listener;
+
+/**
+ * Implements this interface to receive events from IPDFView
+ * while the PDF is loading.
+ */
+public interface OnLoadProgressListener {
+
+    /**
+     * Called when the PDF is opened, and then each time the size of some more pages
+     * is known. The PDF can be browsed from the first call, and it's loaded once
+     * {@link OnLoadCompleteListener#loadComplete(int)} is called.
+     * @param loadedPages the number of pages whose size is known
+     * @param nbPages     the number of pages in this PDF file
+     */
+    void loadProgress(int loadedPages, int nbPages);
+}
@@ -37,14 +37,65 @@ public class PagePart {
 
     private int cacheOrder;
 
-    public PagePart(int userPage, int page, Bitmap renderedBitmap, float width, float height, RectF pageRelativeBounds, boolean thumbnail, int cacheOrder) {
+    /** Compact identity of this part, see {@link #key(int, int, int, int, int)} */
+    private long key;
+
+    public PagePart(int userPage, int page, Bitmap renderedBitmap, float width, float height, RectF pageRelativeBounds, boolean thumbnail, int cacheOrder, long key) {
         super();
         this.userPage = userPage;
         this.page = page;
         this.renderedBitmap = renderedBitmap;
+        this.width = width;
+        this.height = height;
         this.pageRelativeBounds = pageRelativeBounds;
         this.thumbnail = thumbnail;
         this.cacheOrder = cacheOrder;
+        this.key = key;
+    }
+
+    /**
+     * Builds the compact identity of a part : the user page, the grid
+     * this page has been cut into (which depends on the zoom level),
+     * and the cell of the part in this grid. Two parts with the same
+     * key always have the same bounds and size.
+     * @param userPage The user page of the part.
+     * @param nbRows   The number of rows of the grid, 0 for a thumbnail.
+     * @param nbCols   The number of columns of the grid, 0 for a thumbnail.
+     * @param row      The row of the part in the grid.
+     * @param col      The column of the part in the grid.
+     * @return The key identifying the part.
+     */
+    public static long key(int userPage, int nbRows, int nbCols, int row, int col) {
+        return ((long) userPage << 40)
+                | ((long) (nbRows & 0x3FF) << 30)
+                | ((long) (nbCols & 0x3FF) << 20)
+                | ((row & 0x3FF) << 10)
+                | (col & 0x3FF);
+    }
+
+    /** @return The key of the thumbnail of the given user page */
+    public static long thumbnailKey(int userPage) {
+        return key(userPage, 0, 0, 0, 0);
+    }
+
+    public long getKey() {
+        return key;
+    }
+
+    /**
+     * @return The identity of the grid the part belongs to, made of its user page
+     * and its number of rows and columns. Parts of the same grid never overlap.
+     */
+    public long getGridKey() {
+        return key >>> 20;
+    }
+
+    /**
+     * @return The number of cells of the grid the part belongs to, the higher
+     * the zoom level of the grid, the more cells it has.
+     */
+    public int getGridResolution() {
+        return (int) ((key >>> 30) & 0x3FF) * (int) ((key >>> 20) & 0x3FF);
     }
 
     public int getCacheOrder() {
@@ -100,4 +151,17 @@ public class PagePart {
                 && part.getPageRelativeBounds().bottom == pageRelativeBounds.bottom;
     }
 
+    @Override
+    public int hashCode() {
+        int result = page;
+        result = 31 * result + userPage;
+        result = 31 * result + Float.floatToIntBits(width);
+        result = 31 * result + Float.floatToIntBits(height);
+        result = 31 * result + Float.floatToIntBits(pageRelativeBounds.left);
+        result = 31 * result + Float.floatToIntBits(pageRelativeBounds.top);
+        result = 31 * result + Float.floatToIntBits(pageRelativeBounds.right);
+        result = 31 * result + Float.floatToIntBits(pageRelativeBounds.bottom);
+        return result;
+    }
+
 }
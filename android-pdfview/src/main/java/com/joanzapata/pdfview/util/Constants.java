@@ -28,6 +28,30 @@ public interface Constants {
     /** Number of pages loaded (default 3) */
     static final int LOADED_SIZE = 3;
 
+    /** Number of pages loaded ahead of the visible ones in continuous scroll mode (default 1) */
+    static final int PREFETCHED_PAGES = 1;
+
+    /**
+     * How long ahead of the motion of the document the parts and pages
+     * are loaded first, while moving (default 300ms)
+     */
+    static final int LOOK_AHEAD_TIME = 300;
+
+    /** A move older than this duration isn't considered as a motion anymore (default 100ms) */
+    static final int MOTION_TIMEOUT = 100;
+
+    /** Number of pages whose size is read between two progress updates while loading (default 32) */
+    static final int LOAD_PROGRESS_INTERVAL = 32;
+
+    /**
+     * While loading, how long the reading of the page sizes waits before checking
+     * again whether the parts on the screen are all rendered (default 50ms)
+     */
+    static final int LOAD_PAUSE = 50;
+
+    /** Duration of the animation following a fling in continuous scroll mode (default 800ms) */
+    static final int FLING_DURATION = 800;
+
     /** Between 0 and 1, the thumbnails quality (default 0.2) */
     static final float THUMBNAIL_RATIO = 0.2f;
 
@@ -41,15 +65,64 @@ public interface Constants {
     /** Transparency of masks around the main page (between 0 and 255, default 50) */
     static final int MASK_ALPHA = 20;
 
-    /** The size of the grid of loaded images around the current point */
-    static final int GRID_SIZE = 7;
+    /**
+     * Number of zoom levels the parts are rendered at between a zoom level and
+     * its double (default 2, so the parts are rendered at powers of sqrt(2)).
+     * The parts of a level are drawn scaled for all the zoom levels around it.
+     */
+    static final int ZOOM_LEVELS_PER_DOUBLING = 2;
+
+    /**
+     * Ratio between the zoom level and the zoom level of the coarse parts
+     * rendered first to quickly fill the screen after a zoom (default 2)
+     */
+    static final float COARSE_ZOOM_RATIO = 2f;
+
+    /** Maximum number of threads rendering the parts in parallel (default 4) */
+    static final int MAX_RENDERING_THREADS = 4;
 
     public interface Cache {
 
-        /** The size of the cache (number of bitmaps kept) */
-        static final int CACHE_SIZE = (int) Math.pow(GRID_SIZE, 2d);
+        /**
+         * Between 0 and 1, the part of the memory class of the
+         * device used to keep the rendered bitmaps (default 0.25)
+         */
+        static final float CACHE_MEMORY_RATIO = 0.25f;
+
+        /** Between 0 and 1, the part of the cache used by the thumbnails (default 0.1) */
+        static final float THUMBNAILS_CACHE_RATIO = 0.1f;
+
+        /** Number of bytes of a rendered part, considering a 16-bit config */
+        static final int PART_BYTES = (int) (PART_SIZE * PART_SIZE * 2);
+
+        /** Number of unused parts kept to be drawn into again (default 8) */
+        static final int POOL_SIZE = 8;
+
+        /**
+         * Between 0 and 1, the part of the memory class of the device
+         * used by the native stores of the document, where the fonts and
+         * images are kept once decoded, shared between all the handles
+         * on the document (default 1/16)
+         */
+        static final float FITZ_MEMORY_RATIO = 1 / 16f;
+
+        /** Minimum number of bytes of the native store of each handle on the document (default 512KB) */
+        static final int MIN_FITZ_MEMORY = 512 * 1024;
+
+        /** Number of bytes of the thumbnails of all the pages, when enabled (default 2MB) */
+        static final int STRIP_SIZE = 2 * 1024 * 1024;
+
+        /** Maximum size of the thumbnails of all the pages (default 128) */
+        static final int STRIP_THUMBNAIL_SIZE = 128;
+
+        /** Maximum width and height of the bitmap packing the thumbnails of all the pages (default 2048) */
+        static final int STRIP_MAX_ATLAS_SIZE = 2048;
+
+        /** Name of the directory of the disk cache, in the cache directory of the application */
+        static final String DISK_CACHE_DIR = "pdfview";
 
-        static final int THUMBNAILS_CACHE_SIZE = 4;
+        /** Maximum number of parts waiting to be written on the disk, the next ones are dropped (default 16) */
+        static final int DISK_PENDING_WRITES = 16;
     }
 
     public interface Pinch {
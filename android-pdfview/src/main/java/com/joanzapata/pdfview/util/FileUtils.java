@@ -19,27 +19,76 @@
 package com.joanzapata.pdfview.util;
 
 import android.content.Context;
+import android.content.res.AssetFileDescriptor;
 
 import java.io.*;
 
 public class FileUtils {
 
+    /** Size of the buffer used to copy files (default 64KB) */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
     private FileUtils() {
         // Prevents instantiation
     }
 
+    /** @return The file where the copy of the given asset is made by {@link #fileFromAsset(Context, String)} */
+    public static File assetCacheFile(Context context, String assetName) {
+        return new File(context.getCacheDir(), assetName + "-pdfview.pdf");
+    }
+
+    /**
+     * Copy the given asset in the cache directory, unless the copy is already there.
+     * This is a blocking call, it must not be made on the UI thread.
+     */
     public static File fileFromAsset(Context context, String assetName) throws IOException {
-        File outFile = new File(context.getCacheDir(), assetName + "-pdfview.pdf");
-        copy(context.getAssets().open(assetName), outFile);
+        File outFile = assetCacheFile(context, assetName);
+        if (isCopyUpToDate(context, assetName, outFile)) {
+            return outFile;
+        }
+
+        // Copy in a temporary file first, so a copy interrupted midway is never used
+        File tmpFile = new File(outFile.getPath() + ".tmp");
+        copy(context.getAssets().open(assetName), tmpFile);
+        if (!tmpFile.renameTo(outFile)) {
+            tmpFile.delete();
+            throw new IOException("Unable to move " + tmpFile + " to " + outFile);
+        }
         return outFile;
     }
 
+    /**
+     * The assets can only change with the application, so a copy made
+     * after the application has been installed is still valid.
+     */
+    private static boolean isCopyUpToDate(Context context, String assetName, File copy) {
+        if (!copy.exists() || copy.lastModified() < new File(context.getPackageCodePath()).lastModified()) {
+            return false;
+        }
+        AssetFileDescriptor assetFileDescriptor = null;
+        try {
+            assetFileDescriptor = context.getAssets().openFd(assetName);
+            return assetFileDescriptor.getLength() == copy.length();
+        } catch (IOException e) {
+            // The asset is compressed, its size isn't known without reading it all
+            return true;
+        } finally {
+            if (assetFileDescriptor != null) {
+                try {
+                    assetFileDescriptor.close();
+                } catch (IOException e) {
+                    // Nothing to do
+                }
+            }
+        }
+    }
+
     public static void copy(InputStream inputStream, File output) throws IOException {
         OutputStream outputStream = null;
         try {
             outputStream = new FileOutputStream(output);
             int read = 0;
-            byte[] bytes = new byte[1024];
+            byte[] bytes = new byte[BUFFER_SIZE];
             while ((read = inputStream.read(bytes)) != -1) {
                 outputStream.write(bytes, 0, read);
             }
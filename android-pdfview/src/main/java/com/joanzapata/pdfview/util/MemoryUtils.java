@@ -0,0 +1,72 @@
+/**
+ * Copyright 2014 Joan Zapata
+ *
+ * This file is part of Android-pdfview.
+ *
+ * Android-pdfview is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Android-pdfview is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Android-pdfview.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.joanzapata.pdfview.util;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.graphics.Bitmap;
+
+import static com.joanzapata.pdfview.util.Constants.Cache.CACHE_MEMORY_RATIO;
+import static com.joanzapata.pdfview.util.Constants.Cache.FITZ_MEMORY_RATIO;
+import static com.joanzapata.pdfview.util.Constants.Cache.MIN_FITZ_MEMORY;
+
+public class MemoryUtils {
+
+    /** Memory class assumed when the system can't tell (in MB) */
+    private static final int DEFAULT_MEMORY_CLASS = 16;
+
+    private MemoryUtils() {
+        // Prevents instantiation
+    }
+
+    /**
+     * @param context A context.
+     * @return The memory class of the device, which is the approximate
+     * per-application heap size in megabytes.
+     */
+    public static int getMemoryClass(Context context) {
+        ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        if (activityManager == null) {
+            return DEFAULT_MEMORY_CLASS;
+        }
+        return activityManager.getMemoryClass();
+    }
+
+    /**
+     * @param context A context.
+     * @return The number of bytes the rendered bitmaps can use by default.
+     */
+    public static int defaultCacheSize(Context context) {
+        return (int) (getMemoryClass(context) * 1024 * 1024 * CACHE_MEMORY_RATIO);
+    }
+
+    /**
+     * @param context A context.
+     * @return The number of bytes the native stores of all the handles
+     * on the document can use by default.
+     */
+    public static int defaultFitzMemory(Context context) {
+        return Math.max(MIN_FITZ_MEMORY, (int) (getMemoryClass(context) * 1024 * 1024 * FITZ_MEMORY_RATIO));
+    }
+
+    /** @return The number of bytes used by the pixels of the given bitmap */
+    public static int getBitmapSize(Bitmap bitmap) {
+        return bitmap.getRowBytes() * bitmap.getHeight();
+    }
+}
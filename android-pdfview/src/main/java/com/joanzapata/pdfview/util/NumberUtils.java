@@ -40,4 +40,15 @@ public class NumberUtils {
         }
         return number;
     }
+
+    /** @see #limit(int, int, int) */
+    public static float limit(float number, float between, float and) {
+        if (number <= between) {
+            return between;
+        }
+        if (number >= and) {
+            return and;
+        }
+        return number;
+    }
 }
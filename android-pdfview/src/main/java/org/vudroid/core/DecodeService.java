@@ -16,6 +16,12 @@ public interface DecodeService
 
     void open(Uri fileUri);
 
+    /**
+     * @param poolable False if the file won't be opened again, like a temporary file,
+     *                 the documents opened on it then aren't kept once released.
+     */
+    void open(Uri fileUri, boolean poolable);
+
     void decodePage(Object decodeKey, int pageNum, DecodeCallback decodeCallback, float zoom, RectF pageSliceBounds);
 
     void stopDecoding(Object decodeKey);
@@ -30,7 +36,26 @@ public interface DecodeService
 
     int getPageHeight(int pageIndex);
     
+    /**
+     * Get an opened page, which isn't recycled until given back
+     * with {@link #releasePage(CodecPage)}.
+     */
     CodecPage getPage(int pageIndex);
+
+    /** Give back a page got from {@link #getPage(int)}, once done with it */
+    void releasePage(CodecPage page);
+
+    /** @return The number of times a page was already opened when asked, duplicates included */
+    int getPageHits();
+
+    /** @return The number of times a page had to be opened when asked, duplicates included */
+    int getPageMisses();
+
+    /**
+     * Open another native handle on the same document. The returned service
+     * must only be used by one thread at a time, and recycled by its owner.
+     */
+    DecodeService duplicate();
     
     void recycle();
     
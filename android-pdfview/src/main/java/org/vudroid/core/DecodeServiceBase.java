@@ -4,6 +4,7 @@ import android.content.ContentResolver;
 import android.graphics.Bitmap;
 import android.graphics.RectF;
 import android.net.Uri;
+import android.os.ParcelFileDescriptor;
 import android.util.Log;
 import android.view.View;
 
@@ -13,19 +14,22 @@ import org.vudroid.core.codec.CodecPage;
 import org.vudroid.core.utils.PathFromUri;
 
 import java.io.IOException;
-import java.lang.ref.SoftReference;
-import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class DecodeServiceBase implements DecodeService
 {
-    private static final int PAGE_POOL_SIZE = 16;
+    /** Number of bytes the opened pages can use, according to their estimated size */
+    private static final int PAGES_CACHE_SIZE = 8 * 1024 * 1024;
     private final CodecContext codecContext;
 
     private View containerView;
@@ -33,14 +37,34 @@ public class DecodeServiceBase implements DecodeService
     private final ExecutorService executorService = Executors.newSingleThreadExecutor();
     public static final String DECODE_SERVICE = "ViewDroidDecodeService";
     private final Map<Object, Future<?>> decodingFutures = new ConcurrentHashMap<Object, Future<?>>();
-    private final HashMap<Integer, SoftReference<CodecPage>> pages = new HashMap<Integer, SoftReference<CodecPage>>();
+    /**
+     * The opened pages, least recently used first, guarded by itself.
+     * Each duplicate has its own, the pages of a native handle can't be shared.
+     */
+    private final LinkedHashMap<Integer, CodecPage> pages = new LinkedHashMap<Integer, CodecPage>(16, 0.75f, true);
+    /** Number of users of each page got and not released yet, guarded by the pages */
+    private final Map<CodecPage, Integer> pinnedPages = new IdentityHashMap<CodecPage, Integer>();
+    /** Estimated number of bytes of the opened pages */
+    private int pagesSize;
+    /** Number of pages found opened and number of pages opened, shared with the duplicates */
+    private AtomicInteger pageHits = new AtomicInteger(), pageMisses = new AtomicInteger();
     private ContentResolver contentResolver;
-    private Queue<Integer> pageEvictionQueue = new LinkedList<Integer>();
     private boolean isRecycled;
+    private String fileName;
+    private ParcelFileDescriptor fileDescriptor;
+    /** False if the file won't be opened again, its documents aren't kept in the pool */
+    private boolean poolable = true;
+    private final boolean isDuplicate;
 
     public DecodeServiceBase(CodecContext codecContext)
+    {
+        this(codecContext, false);
+    }
+
+    private DecodeServiceBase(CodecContext codecContext, boolean isDuplicate)
     {
         this.codecContext = codecContext;
+        this.isDuplicate = isDuplicate;
     }
 
     public void setContentResolver(ContentResolver contentResolver)
@@ -56,7 +80,43 @@ public class DecodeServiceBase implements DecodeService
 
     public void open(Uri fileUri)
     {
-        document = codecContext.openDocument(PathFromUri.retrieve(contentResolver, fileUri));
+        open(fileUri, true);
+    }
+
+    public void open(Uri fileUri, boolean poolable)
+    {
+        this.poolable = poolable;
+        if ("content".equals(fileUri.getScheme()))
+        {
+            // The native layer opens the descriptor again through its path, and so do the duplicates
+            try
+            {
+                fileDescriptor = contentResolver.openFileDescriptor(fileUri, "r");
+            }
+            catch (java.io.FileNotFoundException e)
+            {
+                throw new RuntimeException("Can't open uri: " + fileUri.toString(), e);
+            }
+            fileName = "/proc/self/fd/" + fileDescriptor.getFd();
+        }
+        else
+        {
+            fileName = PathFromUri.retrieve(contentResolver, fileUri);
+        }
+        document = DocumentPool.acquire(codecContext, fileName, poolable);
+    }
+
+    public DecodeService duplicate()
+    {
+        final DecodeServiceBase duplicate = new DecodeServiceBase(codecContext, true);
+        duplicate.contentResolver = contentResolver;
+        duplicate.containerView = containerView;
+        duplicate.fileName = fileName;
+        duplicate.poolable = poolable;
+        duplicate.pageHits = pageHits;
+        duplicate.pageMisses = pageMisses;
+        duplicate.document = DocumentPool.acquire(codecContext, fileName, poolable);
+        return duplicate;
     }
 
     public void decodePage(Object decodeKey, int pageNum, final DecodeCallback decodeCallback, float zoom, RectF pageSliceBounds)
@@ -95,7 +155,7 @@ public class DecodeServiceBase implements DecodeService
         final Future<?> future = decodingFutures.remove(decodeKey);
         if (future != null)
         {
-            future.cancel(false);
+            future.cancel(true);
         }
     }
 
@@ -109,16 +169,24 @@ public class DecodeServiceBase implements DecodeService
         }
         Log.d(DECODE_SERVICE, "Starting decode of page: " + currentDecodeTask.pageNumber);
         CodecPage vuPage = getPage(currentDecodeTask.pageNumber);
-        preloadNextPage(currentDecodeTask.pageNumber);
+        final Bitmap bitmap;
+        try
+        {
+            preloadNextPage(currentDecodeTask.pageNumber);
 
-        if (isTaskDead(currentDecodeTask))
+            if (isTaskDead(currentDecodeTask))
+            {
+                return;
+            }
+            Log.d(DECODE_SERVICE, "Start converting map to bitmap");
+            float scale = calculateScale(vuPage) * currentDecodeTask.zoom;
+            bitmap = vuPage.renderBitmap(getScaledWidth(currentDecodeTask, vuPage, scale), getScaledHeight(currentDecodeTask, vuPage, scale), currentDecodeTask.pageSliceBounds);
+            Log.d(DECODE_SERVICE, "Converting map to bitmap finished");
+        }
+        finally
         {
-            return;
+            releasePage(vuPage);
         }
-        Log.d(DECODE_SERVICE, "Start converting map to bitmap");
-        float scale = calculateScale(vuPage) * currentDecodeTask.zoom;
-        final Bitmap bitmap = vuPage.renderBitmap(getScaledWidth(currentDecodeTask, vuPage, scale), getScaledHeight(currentDecodeTask, vuPage, scale), currentDecodeTask.pageSliceBounds);
-        Log.d(DECODE_SERVICE, "Converting map to bitmap finished");
         if (isTaskDead(currentDecodeTask))
         {
             bitmap.recycle();
@@ -165,25 +233,120 @@ public class DecodeServiceBase implements DecodeService
         {
             return;
         }
-        getPage(nextPage);
+        releasePage(getPage(nextPage));
     }
 
+    /**
+     * Get an opened page, opening it if it's not among the recently used ones.
+     * The least recently used pages are recycled once the pages use more than
+     * their share of memory, except the ones still in use, which are pinned
+     * until given back with {@link #releasePage(CodecPage)}.
+     */
     public CodecPage getPage(int pageIndex)
     {
-        if (!pages.containsKey(pageIndex) || pages.get(pageIndex).get() == null)
+        synchronized (pages)
         {
-            pages.put(pageIndex, new SoftReference<CodecPage>(document.getPage(pageIndex)));
-            pageEvictionQueue.remove(pageIndex);
-            pageEvictionQueue.offer(pageIndex);
-            if (pageEvictionQueue.size() > PAGE_POOL_SIZE) {
-                Integer evictedPageIndex = pageEvictionQueue.poll();
-                CodecPage evictedPage = pages.remove(evictedPageIndex).get();
-                if (evictedPage != null) {
-                    evictedPage.recycle();
+            final CodecPage cachedPage = pages.get(pageIndex);
+            if (cachedPage != null)
+            {
+                pageHits.incrementAndGet();
+                pin(cachedPage);
+                return cachedPage;
+            }
+        }
+
+        // Opened out of the lock, it may take a while
+        pageMisses.incrementAndGet();
+        CodecPage page = document.getPage(pageIndex);
+        final List<CodecPage> evictedPages = new ArrayList<CodecPage>();
+        synchronized (pages)
+        {
+            final CodecPage concurrentPage = pages.get(pageIndex);
+            if (concurrentPage != null)
+            {
+                // Opened meanwhile by another thread, which may be using it
+                evictedPages.add(page);
+                page = concurrentPage;
+            }
+            else
+            {
+                pages.put(pageIndex, page);
+                pagesSize += page.getEstimatedSize();
+            }
+            pin(page);
+            final Iterator<CodecPage> iterator = pages.values().iterator();
+            while (pagesSize > PAGES_CACHE_SIZE && iterator.hasNext())
+            {
+                final CodecPage evictedPage = iterator.next();
+                if (pinnedPages.containsKey(evictedPage))
+                {
+                    continue;
                 }
+                iterator.remove();
+                pagesSize -= evictedPage.getEstimatedSize();
+                evictedPages.add(evictedPage);
             }
         }
-        return pages.get(pageIndex).get();
+        for (CodecPage evictedPage : evictedPages)
+        {
+            evictedPage.recycle();
+        }
+        return page;
+    }
+
+    /**
+     * Unpin a page got from {@link #getPage(int)}. A page no longer among the
+     * opened pages, once the service is recycled, is recycled by its last user.
+     */
+    public void releasePage(CodecPage page)
+    {
+        synchronized (pages)
+        {
+            final Integer users = pinnedPages.remove(page);
+            if (users == null)
+            {
+                return;
+            }
+            if (users > 1)
+            {
+                pinnedPages.put(page, users - 1);
+                return;
+            }
+            if (pages.containsValue(page))
+            {
+                return;
+            }
+        }
+        page.recycle();
+    }
+
+    /** Called with the lock of the pages held */
+    private void pin(CodecPage page)
+    {
+        final Integer users = pinnedPages.get(page);
+        pinnedPages.put(page, users == null ? 1 : users + 1);
+    }
+
+    /**
+     * @return The sum of the {@link CodecPage#getEstimatedSize() estimated sizes} of the opened
+     * pages, a heuristic made from their area, not the memory actually used by their display lists
+     */
+    public int getPagesSize()
+    {
+        synchronized (pages)
+        {
+            return pagesSize;
+        }
+    }
+
+    public int getPageHits()
+    {
+        return pageHits.get();
+    }
+
+    public int getPageMisses()
+    {
+        return pageMisses.get();
     }
 
     @SuppressWarnings("unused")
@@ -199,24 +362,23 @@ public class DecodeServiceBase implements DecodeService
 
     public int getEffectivePagesWidth()
     {
-        final CodecPage page = getPage(0);
-        return getScaledWidth(page, calculateScale(page));
+        return getTargetWidth();
     }
 
     public int getEffectivePagesHeight()
     {
-        final CodecPage page = getPage(0);
-        return getScaledHeight(page, calculateScale(page));
+        final float scale = 1.0f * getTargetWidth() / document.getPageWidth(0);
+        return (int) (scale * document.getPageHeight(0));
     }
 
     public int getPageWidth(int pageIndex)
     {
-        return getPage(pageIndex).getWidth();
+        return document.getPageWidth(pageIndex);
     }
 
     public int getPageHeight(int pageIndex)
     {
-        return getPage(pageIndex).getHeight();
+        return document.getPageHeight(pageIndex);
     }
 
     private void updateImage(final DecodeTask currentDecodeTask, Bitmap bitmap)
@@ -264,14 +426,29 @@ public class DecodeServiceBase implements DecodeService
         }
         executorService.submit(new Runnable() {
             public void run() {
-                for (SoftReference<CodecPage> codecPageSoftReference : pages.values()) {
-                    CodecPage page = codecPageSoftReference.get();
-                    if (page != null) {
-                        page.recycle();
+                synchronized (pages) {
+                    // The pages still in use are recycled when released
+                    for (CodecPage page : pages.values()) {
+                        if (!pinnedPages.containsKey(page)) {
+                            page.recycle();
+                        }
+                    }
+                    pages.clear();
+                    pagesSize = 0;
+                }
+                if (document != null) {
+                    DocumentPool.release(document);
+                }
+                if (!isDuplicate) {
+                    codecContext.recycle();
+                }
+                if (fileDescriptor != null) {
+                    try {
+                        fileDescriptor.close();
+                    } catch (IOException e) {
+                        Log.e(DECODE_SERVICE, "Unable to close the document", e);
                     }
                 }
-                document.recycle();
-                codecContext.recycle();
             }
         });
         executorService.shutdown();
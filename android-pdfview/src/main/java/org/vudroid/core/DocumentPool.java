@@ -0,0 +1,228 @@
+package org.vudroid.core;
+
+import org.vudroid.core.codec.CodecContext;
+import org.vudroid.core.codec.CodecDocument;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Process-wide pool of opened documents, so a document viewed recently
+ * is opened again without being parsed again.
+ * <p/>
+ * A document can only be used by one thread at a time, so each one is either
+ * acquired by a decode service or idle in the pool. The idle documents of a file
+ * are reused only while the file isn't modified, and by codec contexts of the
+ * same class and with the same document options.
+ * They're recycled after some time, or when there are too many of them, or when
+ * their native stores use too much memory. The pool keeps twice the documents
+ * acquired at the same time at the peak, so all the handles of a view, and the ones
+ * of the view shown before it, survive when going back and forth between them.
+ */
+public class DocumentPool
+{
+    /** Number of idle documents always allowed, all files included */
+    private static final int MIN_IDLE_DOCUMENTS = 8;
+
+    /** Number of bytes of native memory of the idle documents always allowed, all files included */
+    private static final long MIN_IDLE_MEMORY = 8 * 1024 * 1024;
+
+    /** Number of peaks of acquired documents the idle documents can reach */
+    private static final int IDLE_PEAKS = 2;
+
+    /** Time after which an idle document is recycled, in milliseconds */
+    private static final long IDLE_TIMEOUT = 60 * 1000;
+
+    /** The idle documents, the most recently released last */
+    private static final LinkedList<IdleDocument> idleDocuments = new LinkedList<IdleDocument>();
+
+    /** The key of each acquired document, null for the ones which can't be reused */
+    private static final Map<CodecDocument, String> acquiredDocuments = new IdentityHashMap<CodecDocument, String>();
+
+    /** The native memory of each acquired document */
+    private static final Map<CodecDocument, Integer> acquiredMemories = new IdentityHashMap<CodecDocument, Integer>();
+
+    /** Number of bytes of native memory of the idle documents */
+    private static long idleMemory;
+
+    /** Number of bytes of native memory of the acquired documents */
+    private static long acquiredMemory;
+
+    /** Maximum number of documents, and of their bytes of native memory, acquired at the same time */
+    private static int peakAcquiredDocuments;
+    private static long peakAcquiredMemory;
+
+    private static final ScheduledExecutorService evictionExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+    {
+        public Thread newThread(Runnable runnable)
+        {
+            final Thread thread = new Thread(runnable, "DocumentPool-eviction");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private DocumentPool()
+    {
+    }
+
+    /**
+     * Get a document for the exclusive use of the caller, opened again only if
+     * none is idle for this file. It must be given back with {@link #release}.
+     * @param poolable False if the file won't be opened again, like a temporary
+     *                 file, its documents are then recycled as soon as released.
+     */
+    public static CodecDocument acquire(CodecContext codecContext, String fileName, boolean poolable)
+    {
+        final String key = poolable ? keyOf(codecContext, fileName) : null;
+        synchronized (idleDocuments)
+        {
+            if (key != null)
+            {
+                for (Iterator<IdleDocument> iterator = idleDocuments.descendingIterator(); iterator.hasNext(); )
+                {
+                    final IdleDocument idleDocument = iterator.next();
+                    if (idleDocument.key.equals(key))
+                    {
+                        iterator.remove();
+                        idleMemory -= idleDocument.memory;
+                        onAcquired(idleDocument.document, key, idleDocument.memory);
+                        return idleDocument.document;
+                    }
+                }
+            }
+        }
+
+        // Opened out of the lock, it may take a while
+        final CodecDocument document = codecContext.openDocument(fileName);
+        synchronized (idleDocuments)
+        {
+            onAcquired(document, key, codecContext.getDocumentMemory());
+        }
+        return document;
+    }
+
+    /** Called with the lock held */
+    private static void onAcquired(CodecDocument document, String key, int memory)
+    {
+        acquiredDocuments.put(document, key);
+        acquiredMemories.put(document, memory);
+        acquiredMemory += memory;
+        peakAcquiredDocuments = Math.max(peakAcquiredDocuments, acquiredDocuments.size());
+        peakAcquiredMemory = Math.max(peakAcquiredMemory, acquiredMemory);
+    }
+
+    /** Give back a document, which must not be used by the caller anymore */
+    public static void release(CodecDocument document)
+    {
+        final List<CodecDocument> evictedDocuments = new ArrayList<CodecDocument>();
+        synchronized (idleDocuments)
+        {
+            final String key = acquiredDocuments.remove(document);
+            final Integer memory = acquiredMemories.remove(document);
+            if (memory != null)
+            {
+                acquiredMemory -= memory;
+            }
+            if (key == null || memory == null)
+            {
+                evictedDocuments.add(document);
+            }
+            else
+            {
+                idleDocuments.add(new IdleDocument(key, document, memory, System.currentTimeMillis()));
+                idleMemory += memory;
+                final int maxIdleDocuments = Math.max(MIN_IDLE_DOCUMENTS, IDLE_PEAKS * peakAcquiredDocuments);
+                final long maxIdleMemory = Math.max(MIN_IDLE_MEMORY, IDLE_PEAKS * peakAcquiredMemory);
+                while (idleDocuments.size() > maxIdleDocuments || idleMemory > maxIdleMemory)
+                {
+                    evictedDocuments.add(removeEldest());
+                }
+                evictionExecutor.schedule(new Runnable()
+                {
+                    public void run()
+                    {
+                        evictIdleDocuments();
+                    }
+                }, IDLE_TIMEOUT, TimeUnit.MILLISECONDS);
+            }
+        }
+        recycle(evictedDocuments);
+    }
+
+    /** Recycle the documents idle for too long */
+    private static void evictIdleDocuments()
+    {
+        final List<CodecDocument> evictedDocuments = new ArrayList<CodecDocument>();
+        final long now = System.currentTimeMillis();
+        synchronized (idleDocuments)
+        {
+            while (!idleDocuments.isEmpty() && now - idleDocuments.getFirst().releaseTime >= IDLE_TIMEOUT)
+            {
+                evictedDocuments.add(removeEldest());
+            }
+        }
+        recycle(evictedDocuments);
+    }
+
+    /** Called with the lock held */
+    private static CodecDocument removeEldest()
+    {
+        final IdleDocument eldest = idleDocuments.removeFirst();
+        idleMemory -= eldest.memory;
+        return eldest.document;
+    }
+
+    private static void recycle(List<CodecDocument> documents)
+    {
+        for (CodecDocument document : documents)
+        {
+            document.recycle();
+        }
+    }
+
+    /**
+     * @return The key the documents of the given file are pooled with, or null
+     * if they can't be reused, like the ones opened from a file descriptor.
+     */
+    private static String keyOf(CodecContext codecContext, String fileName)
+    {
+        if (fileName.startsWith("/proc/"))
+        {
+            return null;
+        }
+        final File file = new File(fileName);
+        if (!file.isFile())
+        {
+            return null;
+        }
+        // Each load has its own context, so the context itself isn't part of the key
+        return codecContext.getClass().getName() + "[" + codecContext.getDocumentOptions() + "]:"
+                + file.getAbsolutePath() + ":" + file.lastModified() + ":" + file.length();
+    }
+
+    private static class IdleDocument
+    {
+        final String key;
+        final CodecDocument document;
+        final int memory;
+        final long releaseTime;
+
+        IdleDocument(String key, CodecDocument document, int memory, long releaseTime)
+        {
+            this.key = key;
+            this.document = document;
+            this.memory = memory;
+            this.releaseTime = releaseTime;
+        }
+    }
+}
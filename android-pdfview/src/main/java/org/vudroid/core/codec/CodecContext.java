@@ -6,6 +6,15 @@ public interface CodecContext
 {
     CodecDocument openDocument(String fileName);
 
+    /**
+     * @return How the documents are opened, the contexts with the same
+     * options open the same documents, which can be reused between them.
+     */
+    String getDocumentOptions();
+
+    /** @return The number of bytes of native memory each document may keep, besides its pages */
+    int getDocumentMemory();
+
     void setContentResolver(ContentResolver contentResolver);
 
     void recycle();
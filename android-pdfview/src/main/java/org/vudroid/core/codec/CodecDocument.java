@@ -5,5 +5,10 @@ public interface CodecDocument {
 
     int getPageCount();
 
+    /** Size of a page, known without keeping the page opened */
+    int getPageWidth(int pageNumber);
+
+    int getPageHeight(int pageNumber);
+
     void recycle();
 }
@@ -15,5 +15,24 @@ public interface CodecPage
 
     Bitmap renderBitmap(int width, int height, RectF pageSliceBounds);
 
+    /**
+     * Render the given slice of the page into an existing mutable bitmap,
+     * the size of the rendering being the size of the bitmap. The rendering
+     * gives up as soon as it can once the signal is canceled.
+     * @return True if the pixels of the bitmap have been written, false if the
+     * rendering gave up, leaving the bitmap content undefined, even if the signal
+     * isn't canceled anymore.
+     */
+    boolean renderBitmap(Bitmap bitmap, RectF pageSliceBounds, CancellationSignal signal);
+
+    /** @return An estimation of the number of bytes of native memory used by the opened page */
+    int getEstimatedSize();
+
     void recycle();
+
+    /** Tells a rendering it is not needed anymore */
+    interface CancellationSignal
+    {
+        boolean isCanceled();
+    }
 }
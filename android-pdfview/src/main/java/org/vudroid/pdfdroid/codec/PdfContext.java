@@ -13,9 +13,37 @@ public class PdfContext implements CodecContext
         VuDroidLibraryLoader.load();
     }
 
+    /** Number of bytes of the native store of each document handle, each one having its own */
+    private final int fitzMemory;
+
+    public PdfContext()
+    {
+        this(PdfDocument.DEFAULT_FITZMEMORY);
+    }
+
+    public PdfContext(int fitzMemory)
+    {
+        this.fitzMemory = fitzMemory;
+    }
+
+    public int getFitzMemory()
+    {
+        return fitzMemory;
+    }
+
     public CodecDocument openDocument(String fileName)
     {
-        return PdfDocument.openDocument(fileName, "");
+        return PdfDocument.openDocument(fileName, "", fitzMemory);
+    }
+
+    public int getDocumentMemory()
+    {
+        return fitzMemory;
+    }
+
+    public String getDocumentOptions()
+    {
+        return "fitzmemory=" + fitzMemory;
     }
 
     public void setContentResolver(ContentResolver contentResolver)
@@ -1,12 +1,26 @@
 package org.vudroid.pdfdroid.codec;
 
+import android.graphics.RectF;
+
 import org.vudroid.core.codec.CodecDocument;
 import org.vudroid.core.codec.CodecPage;
 
 public class PdfDocument implements CodecDocument
 {
     private long docHandle;
-    private static final int FITZMEMORY = 512 * 1024;
+    /**
+     * Guards the native calls which aren't safe to make from several threads at once.
+     * The native library shares a FreeType library between all the documents, with
+     * a reference count that isn't atomic, updated when a document is opened or freed.
+     * Opening and freeing a page may load or release fonts in it too, so only the
+     * renderings of the pages run in parallel.
+     */
+    static final Object NATIVE_LOCK = new Object();
+
+    /** Number of bytes of the native resource store of a document, unless told otherwise */
+    public static final int DEFAULT_FITZMEMORY = 512 * 1024;
+    /** Media boxes of the pages, null until fetched */
+    private RectF[] mediaBoxes;
 
     private PdfDocument(long docHandle)
     {
@@ -15,7 +29,47 @@ public class PdfDocument implements CodecDocument
 
     public CodecPage getPage(int pageNumber)
     {
-        return PdfPage.createPage(docHandle, pageNumber + 1);
+        final PdfPage page = PdfPage.createPage(docHandle, pageNumber + 1);
+        synchronized (this)
+        {
+            getMediaBoxes()[pageNumber] = page.getMediaBox();
+        }
+        return page;
+    }
+
+    public synchronized int getPageWidth(int pageNumber)
+    {
+        return (int) getPageMediaBox(pageNumber).width();
+    }
+
+    public synchronized int getPageHeight(int pageNumber)
+    {
+        return (int) getPageMediaBox(pageNumber).height();
+    }
+
+    /**
+     * The media box is only known once the page is opened, which interprets its
+     * whole content, so the pages are opened one at a time, only when asked.
+     */
+    private RectF getPageMediaBox(int pageNumber)
+    {
+        final RectF[] boxes = getMediaBoxes();
+        if (boxes[pageNumber] == null)
+        {
+            final PdfPage page = PdfPage.createPage(docHandle, pageNumber + 1);
+            boxes[pageNumber] = page.getMediaBox();
+            page.recycle();
+        }
+        return boxes[pageNumber];
+    }
+
+    private RectF[] getMediaBoxes()
+    {
+        if (mediaBoxes == null)
+        {
+            mediaBoxes = new RectF[getPageCount()];
+        }
+        return mediaBoxes;
     }
 
     public int getPageCount()
@@ -25,7 +79,19 @@ public class PdfDocument implements CodecDocument
 
     static PdfDocument openDocument(String fname, String pwd)
     {
-        return new PdfDocument(open(FITZMEMORY, fname, pwd));
+        return openDocument(fname, pwd, DEFAULT_FITZMEMORY);
+    }
+
+    /**
+     * @param fitzMemory Number of bytes of the native store, where the fonts, images
+     *                   and other resources of the document are kept once decoded.
+     */
+    static PdfDocument openDocument(String fname, String pwd, int fitzMemory)
+    {
+        synchronized (NATIVE_LOCK)
+        {
+            return new PdfDocument(open(fitzMemory, fname, pwd));
+        }
     }
 
     private static native long open(int fitzmemory, String fname, String pwd);
@@ -43,7 +109,9 @@ public class PdfDocument implements CodecDocument
 
     public synchronized void recycle() {
         if (docHandle != 0) {
-            free(docHandle);
+            synchronized (NATIVE_LOCK) {
+                free(docHandle);
+            }
             docHandle = 0;
         }
     }
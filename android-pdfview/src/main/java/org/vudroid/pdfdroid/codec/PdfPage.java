@@ -11,13 +11,23 @@ import java.nio.ByteBuffer;
 
 public class PdfPage implements CodecPage
 {
+    /** Direct buffers the native code renders into, kept by each rendering thread */
+    private static final ThreadLocal<RenderingBuffers> renderingBuffers = new ThreadLocal<RenderingBuffers>();
+
+    /** Estimated number of bytes of an opened page, whatever its content */
+    private static final int PAGE_BASE_SIZE = 16 * 1024;
+
     private long pageHandle;
     private long docHandle;
 
+    /** The media box, fetched once when the page is opened */
+    private final RectF mediaBox;
+
     private PdfPage(long pageHandle, long docHandle)
     {
         this.pageHandle = pageHandle;
         this.docHandle = docHandle;
+        this.mediaBox = fetchMediaBox();
     }
 
     public boolean isDecoding()
@@ -32,27 +42,65 @@ public class PdfPage implements CodecPage
 
     public int getWidth()
     {
-        return (int) getMediaBox().width();
+        return (int) mediaBox.width();
     }
 
     public int getHeight()
     {
-        return (int) getMediaBox().height();
+        return (int) mediaBox.height();
+    }
+
+    /**
+     * The native page doesn't tell how much memory it uses, so it's roughly
+     * estimated from its area, large pages tending to have more content.
+     * It's only a heuristic to bound the opened pages, not a measure.
+     */
+    public int getEstimatedSize()
+    {
+        return PAGE_BASE_SIZE + (int) Math.abs(mediaBox.width() * mediaBox.height());
+    }
+
+    /**
+     * The native page interprets the content stream once, when opened, into a
+     * display list every rendering of the page is made from. Keeping the page
+     * opened is what spares the parts of a page from parsing it again.
+     * @return True while the display list is kept, until the page is recycled.
+     */
+    public synchronized boolean isDisplayListCached()
+    {
+        return pageHandle != 0;
     }
 
     public Bitmap renderBitmap(int width, int height, RectF pageSliceBounds)
+    {
+        return render(new Rect(0,0,width,height), createMatrix(width, height, pageSliceBounds));
+    }
+
+    public boolean renderBitmap(Bitmap bitmap, RectF pageSliceBounds, CancellationSignal signal)
+    {
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        return render(new Rect(0, 0, width, height), createMatrix(width, height, pageSliceBounds), bitmap, signal);
+    }
+
+    private Matrix createMatrix(int width, int height, RectF pageSliceBounds)
     {
         Matrix matrix = new Matrix();
-        matrix.postScale(width / getMediaBox().width(), -height / getMediaBox().height());
+        matrix.postScale(width / mediaBox.width(), -height / mediaBox.height());
         matrix.postTranslate(0, height);
         matrix.postTranslate(-pageSliceBounds.left*width, -pageSliceBounds.top*height);
         matrix.postScale(1/pageSliceBounds.width(), 1/pageSliceBounds.height());
-        return render(new Rect(0,0,width,height), matrix);
+        return matrix;
     }
 
     static PdfPage createPage(long dochandle, int pageno)
     {
-        return new PdfPage(open(dochandle, pageno), dochandle);
+        final long pageHandle;
+        synchronized (PdfDocument.NATIVE_LOCK)
+        {
+            pageHandle = open(dochandle, pageno);
+        }
+        return new PdfPage(pageHandle, dochandle);
     }
 
     @Override
@@ -64,12 +112,19 @@ public class PdfPage implements CodecPage
 
     public synchronized void recycle() {
         if (pageHandle != 0) {
-            free(pageHandle);
+            synchronized (PdfDocument.NATIVE_LOCK) {
+                free(pageHandle);
+            }
             pageHandle = 0;
         }
     }
 
-    private RectF getMediaBox()
+    RectF getMediaBox()
+    {
+        return mediaBox;
+    }
+
+    private RectF fetchMediaBox()
     {
         float[] box = new float[4];
         getMediaBox(pageHandle, box);
@@ -77,6 +132,26 @@ public class PdfPage implements CodecPage
     }
 
     public Bitmap render(Rect viewbox, Matrix matrix)
+	{
+        final Bitmap bitmap = Bitmap.createBitmap(viewbox.width(), viewbox.height(), Bitmap.Config.RGB_565);
+        if (!render(viewbox, matrix, bitmap, null))
+        {
+            bitmap.recycle();
+            throw new IllegalStateException("The page has been recycled");
+        }
+        return bitmap;
+	}
+
+    /**
+     * Render the page into the given RGB_565 bitmap, as large as the viewbox.
+     * The native code writes the 16-bit pixels directly into a direct buffer,
+     * which is copied once into the bitmap.
+     * The native renderer has no way to be interrupted, so the signal, if any,
+     * is checked right before and right after it. A page already recycled isn't
+     * rendered, the caller gets false and decides whether to render it again.
+     * @return True if the pixels have been copied into the bitmap.
+     */
+    private boolean render(Rect viewbox, Matrix matrix, Bitmap bitmap, CancellationSignal signal)
 	{
         int[] mRect = new int[4];
         mRect[0] = viewbox.left;
@@ -94,16 +169,26 @@ public class PdfPage implements CodecPage
 		matrixArray[4] = matrixSource[2];
 		matrixArray[5] = matrixSource[5];
 
-        int width = viewbox.width();
-        int height = viewbox.height();
-        int[] bufferarray = new int[width * height];
-        nativeCreateView(docHandle, pageHandle, mRect, matrixArray, bufferarray);
-        return Bitmap.createBitmap(bufferarray, width, height, Bitmap.Config.RGB_565);
-        /*ByteBuffer buffer = ByteBuffer.allocateDirect(width * height * 2);
-        render(docHandle, docHandle, mRect, matrixArray, buffer, ByteBuffer.allocateDirect(width * height * 8));
-        final Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.RGB_565);
-        bitmap.copyPixelsFromBuffer(buffer);
-        return bitmap;*/
+        if (signal != null && signal.isCanceled())
+        {
+            return false;
+        }
+        RenderingBuffers buffers = RenderingBuffers.get(viewbox.width() * viewbox.height());
+        synchronized (this)
+        {
+            if (pageHandle == 0)
+            {
+                return false;
+            }
+            render(docHandle, pageHandle, mRect, matrixArray, buffers.pixels, buffers.temp);
+        }
+        if (signal != null && signal.isCanceled())
+        {
+            return false;
+        }
+        buffers.pixels.rewind();
+        bitmap.copyPixelsFromBuffer(buffers.pixels);
+        return true;
 	}
 
     private static native void getMediaBox(long handle, float[] mediabox);
@@ -116,7 +201,32 @@ public class PdfPage implements CodecPage
 		int[] viewboxarray, float[] matrixarray,
 		ByteBuffer byteBuffer, ByteBuffer tempBuffer);
 
-    private native void nativeCreateView(long dochandle, long pagehandle,
-		int[] viewboxarray, float[] matrixarray,
-		int[] bufferarray);
+    private static class RenderingBuffers
+    {
+        /** 16-bit pixels of the rendering */
+        ByteBuffer pixels;
+
+        /** Working memory of the native renderer */
+        ByteBuffer temp;
+
+        /** @return The buffers of the current thread, large enough for the given number of pixels */
+        static RenderingBuffers get(int nbPixels)
+        {
+            RenderingBuffers buffers = renderingBuffers.get();
+            if (buffers == null)
+            {
+                buffers = new RenderingBuffers();
+                renderingBuffers.set(buffers);
+            }
+            if (buffers.pixels == null || buffers.pixels.capacity() < nbPixels * 2)
+            {
+                buffers.pixels = ByteBuffer.allocateDirect(nbPixels * 2);
+                buffers.temp = ByteBuffer.allocateDirect(nbPixels * 8);
+            }
+            buffers.pixels.clear();
+            buffers.pixels.limit(nbPixels * 2);
+            buffers.temp.clear();
+            return buffers;
+        }
+    }
 }